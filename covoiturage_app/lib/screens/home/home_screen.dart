@@ -1,6 +1,7 @@
 import 'package:flutter/material.dart';
 import 'package:provider/provider.dart';
 import '../../providers/auth_provider.dart';
+import '../trips/available_trips_screen.dart';
 
 class HomeScreen extends StatefulWidget {
   const HomeScreen({super.key});
@@ -137,7 +138,9 @@ class DashboardTab extends StatelessWidget {
                     subtitle: 'Search for available rides',
                     color: Colors.green,
                     onTap: () {
-                      // TODO: Navigate to ride search
+                      Navigator.of(context).push(
+                        MaterialPageRoute(builder: (context) => const AvailableTripsScreen()),
+                      );
                     },
                   ),
                 ),
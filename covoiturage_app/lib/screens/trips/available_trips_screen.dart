@@ -0,0 +1,158 @@
+import 'package:flutter/material.dart';
+import '../../services/trip_service.dart';
+
+class AvailableTripsScreen extends StatefulWidget {
+  const AvailableTripsScreen({super.key});
+
+  @override
+  State<AvailableTripsScreen> createState() => _AvailableTripsScreenState();
+}
+
+class _AvailableTripsScreenState extends State<AvailableTripsScreen> {
+  static const int _pageSize = 20;
+
+  final _tripService = TripService();
+  final _scrollController = ScrollController();
+
+  final List<dynamic> _trips = [];
+  String? _nextCursor;
+  bool _hasNext = true;
+  bool _isLoading = false;
+
+  @override
+  void initState() {
+    super.initState();
+    _scrollController.addListener(_onScroll);
+    _loadMore();
+  }
+
+  @override
+  void dispose() {
+    _scrollController.removeListener(_onScroll);
+    _scrollController.dispose();
+    super.dispose();
+  }
+
+  // Fetch the next page when the list gets close to its end
+  void _onScroll() {
+    if (_scrollController.position.extentAfter < 300) {
+      _loadMore();
+    }
+  }
+
+  Future<void> _loadMore() async {
+    if (_isLoading || !_hasNext) return;
+    setState(() => _isLoading = true);
+    try {
+      final page = await _tripService.getAvailableTrips(cursor: _nextCursor, size: _pageSize);
+      if (!mounted) return;
+      setState(() {
+        _trips.addAll(page['trips'] ?? []);
+        _nextCursor = page['nextCursor'];
+        _hasNext = page['hasNext'] == true && _nextCursor != null;
+      });
+    } catch (e) {
+      _showErrorSnackBar('Failed to load trips: $e');
+    } finally {
+      if (mounted) {
+        setState(() => _isLoading = false);
+      }
+    }
+  }
+
+  Future<void> _refresh() async {
+    setState(() {
+      _trips.clear();
+      _nextCursor = null;
+      _hasNext = true;
+    });
+    await _loadMore();
+  }
+
+  void _showErrorSnackBar(String message) {
+    if (mounted) {
+      ScaffoldMessenger.of(context).showSnackBar(
+        SnackBar(content: Text(message), backgroundColor: Colors.red),
+      );
+    }
+  }
+
+  @override
+  Widget build(BuildContext context) {
+    return Scaffold(
+      appBar: AppBar(
+        title: const Text('Available Rides'),
+      ),
+      body: _trips.isEmpty && _isLoading
+          ? const Center(child: CircularProgressIndicator())
+          : RefreshIndicator(
+              onRefresh: _refresh,
+              child: _trips.isEmpty
+                  ? ListView(
+                      physics: const AlwaysScrollableScrollPhysics(),
+                      children: const [
+                        SizedBox(height: 120),
+                        Center(child: Text('No rides available right now')),
+                      ],
+                    )
+                  : ListView.builder(
+                      controller: _scrollController,
+                      physics: const AlwaysScrollableScrollPhysics(),
+                      padding: const EdgeInsets.all(16.0),
+                      itemCount: _trips.length + (_hasNext ? 1 : 0),
+                      itemBuilder: (context, index) {
+                        if (index == _trips.length) {
+                          return _buildLoadMore();
+                        }
+                        return _buildTripCard(_trips[index]);
+                      },
+                    ),
+            ),
+    );
+  }
+
+  Widget _buildLoadMore() {
+    return Padding(
+      padding: const EdgeInsets.symmetric(vertical: 16.0),
+      child: Center(
+        child: _isLoading
+            ? const CircularProgressIndicator()
+            : TextButton(
+                onPressed: _loadMore,
+                child: const Text('Load more'),
+              ),
+      ),
+    );
+  }
+
+  Widget _buildTripCard(dynamic trip) {
+    final cities = (trip['cities'] as List<dynamic>?) ?? [];
+    final route = cities.isNotEmpty
+        ? '${cities.first['name']} → ${cities.last['name']}'
+        : 'Trip #${trip['id']}';
+    final departure = DateTime.tryParse(trip['departureTime'] ?? '');
+    final driver = trip['driver'];
+
+    return Card(
+      child: ListTile(
+        leading: const Icon(Icons.directions_car, color: Colors.blue),
+        title: Text(route),
+        subtitle: Text([
+          if (departure != null) _formatDateTime(departure),
+          if (driver != null) '${driver['firstName']} ${driver['lastName']}',
+          '${trip['availableSeats']} seats left',
+        ].join(' • ')),
+        trailing: Text(
+          '${trip['pricePerSeat']} TND',
+          style: const TextStyle(fontWeight: FontWeight.bold),
+        ),
+      ),
+    );
+  }
+
+  String _formatDateTime(DateTime dateTime) {
+    String twoDigits(int value) => value.toString().padLeft(2, '0');
+    return '${twoDigits(dateTime.day)}/${twoDigits(dateTime.month)}/${dateTime.year} '
+        '${twoDigits(dateTime.hour)}:${twoDigits(dateTime.minute)}';
+  }
+}
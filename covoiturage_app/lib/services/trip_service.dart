@@ -0,0 +1,25 @@
+import 'api_service.dart';
+
+class TripService {
+  static final TripService _instance = TripService._internal();
+  factory TripService() => _instance;
+  TripService._internal();
+
+  final ApiService _apiService = ApiService.instance;
+
+  /// Get one page of available trips.
+  /// Pass the returned `nextCursor` back as [cursor] to load the next page.
+  Future<Map<String, dynamic>> getAvailableTrips({String? cursor, int size = 20}) async {
+    try {
+      final query = <String, String>{'size': size.toString()};
+      if (cursor != null) {
+        query['cursor'] = cursor;
+      }
+      final path = Uri(path: '/trips/available/paged', queryParameters: query).toString();
+      final response = await _apiService.getDynamic(path);
+      return response;
+    } catch (e) {
+      throw Exception('Failed to load available trips: $e');
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package esprit.pfe.covoiturage_final.config;
 
 import esprit.pfe.covoiturage_final.security.AuthTokenFilter;
+import esprit.pfe.covoiturage_final.services.IdempotencyStore;
 import esprit.pfe.covoiturage_final.services.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -65,6 +66,7 @@ public class SecurityConfig {
                     .requestMatchers("/api/options/**").permitAll()
                     .requestMatchers("/api/cities/**").permitAll()
                     .requestMatchers("/api/trips/available").permitAll()
+                    .requestMatchers("/api/trips/available/paged").permitAll()
                     .requestMatchers("/api/trips/search").permitAll()
                     .requestMatchers("/api/test/**").permitAll()
                     .requestMatchers("/h2-console/**").permitAll()
@@ -82,8 +84,9 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(Arrays.asList("authorization", "content-type", "x-auth-token"));
-        configuration.setExposedHeaders(Arrays.asList("x-auth-token"));
+        configuration.setAllowedHeaders(Arrays.asList("authorization", "content-type", "x-auth-token",
+            IdempotencyStore.HEADER));
+        configuration.setExposedHeaders(Arrays.asList("x-auth-token", IdempotencyStore.REPLAYED_HEADER));
         configuration.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -1,6 +1,7 @@
 package esprit.pfe.covoiturage_final.controllers;
 
 import esprit.pfe.covoiturage_final.dto.*;
+import esprit.pfe.covoiturage_final.services.IdempotencyStore;
 import esprit.pfe.covoiturage_final.services.TripService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,12 +20,18 @@ public class BookingController {
     @Autowired
     private TripService tripService;
     
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
     @PostMapping
-    public ResponseEntity<?> createBooking(@Valid @RequestBody BookingRequest request) {
+    public ResponseEntity<?> createBooking(@Valid @RequestBody BookingRequest request,
+                                           @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         try {
             Long passengerId = getCurrentUserId();
-            BookingResponse response = tripService.createBooking(request, passengerId);
-            return ResponseEntity.ok(response);
+            return idempotencyStore.execute("POST /api/bookings", passengerId, idempotencyKey, request, () -> {
+                BookingResponse response = tripService.createBooking(request, passengerId);
+                return ResponseEntity.ok(response);
+            });
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -72,6 +79,17 @@ public class BookingController {
         }
     }
     
+    @PostMapping("/trip/{tripId}/decisions")
+    public ResponseEntity<?> decideBookings(@PathVariable Long tripId, @Valid @RequestBody BookingDecisionRequest request) {
+        try {
+            Long driverId = getCurrentUserId();
+            List<BookingDecisionResult> response = tripService.decideBookings(tripId, request, driverId);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
     @PostMapping("/{bookingId}/cancel")
     public ResponseEntity<?> cancelBooking(@PathVariable Long bookingId) {
         try {
@@ -83,6 +101,39 @@ public class BookingController {
         }
     }
     
+    @PostMapping("/waitlist")
+    public ResponseEntity<?> joinWaitlist(@Valid @RequestBody BookingRequest request) {
+        try {
+            Long passengerId = getCurrentUserId();
+            WaitlistResponse response = tripService.joinWaitlist(request, passengerId);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    @GetMapping("/waitlist/my-entries")
+    public ResponseEntity<?> getMyWaitlistEntries() {
+        try {
+            Long passengerId = getCurrentUserId();
+            List<WaitlistResponse> response = tripService.getWaitlistByPassenger(passengerId);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    @PostMapping("/waitlist/{entryId}/leave")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable Long entryId) {
+        try {
+            Long passengerId = getCurrentUserId();
+            WaitlistResponse response = tripService.leaveWaitlist(entryId, passengerId);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
     private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getPrincipal() instanceof esprit.pfe.covoiturage_final.entities.User) {
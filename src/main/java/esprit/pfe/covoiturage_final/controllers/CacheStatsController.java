@@ -0,0 +1,37 @@
+package esprit.pfe.covoiturage_final.controllers;
+
+import esprit.pfe.covoiturage_final.services.DriverSummaryCache;
+import esprit.pfe.covoiturage_final.services.IdempotencyStore;
+import esprit.pfe.covoiturage_final.services.TripSearchCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/cache-stats")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class CacheStatsController {
+    
+    @Autowired
+    private TripSearchCache tripSearchCache;
+    
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
+    @Autowired
+    private DriverSummaryCache driverSummaryCache;
+    
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tripSearch", tripSearchCache.getStats());
+        stats.put("idempotency", idempotencyStore.getStats());
+        stats.put("drivers", driverSummaryCache.getStats());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -2,6 +2,7 @@ package esprit.pfe.covoiturage_final.controllers;
 
 import esprit.pfe.covoiturage_final.entities.Ville;
 import esprit.pfe.covoiturage_final.repositories.VilleRepository;
+import esprit.pfe.covoiturage_final.services.CityNameTrie;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +18,9 @@ public class CityController {
     @Autowired
     private VilleRepository villeRepository;
     
+    @Autowired
+    private CityNameTrie cityNameTrie;
+    
     @GetMapping
     public ResponseEntity<List<Ville>> getAllCities() {
         List<Ville> cities = villeRepository.findAll();
@@ -35,8 +39,10 @@ public class CityController {
     }
     
     @GetMapping("/search")
-    public ResponseEntity<List<Ville>> searchCities(@RequestParam String name) {
-        List<Ville> cities = villeRepository.findByNameContainingIgnoreCase(name);
+    public ResponseEntity<List<Ville>> searchCities(@RequestParam String name,
+                                                    @RequestParam(defaultValue = "10") Integer limit) {
+        int size = Math.max(1, Math.min(limit, CityNameTrie.MAX_COMPLETIONS));
+        List<Ville> cities = cityNameTrie.complete(name, size);
         return ResponseEntity.ok(cities);
     }
     
@@ -0,0 +1,56 @@
+package esprit.pfe.covoiturage_final.controllers;
+
+import esprit.pfe.covoiturage_final.entities.ReservationEvent;
+import esprit.pfe.covoiturage_final.services.ReservationEventLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/reservation-ledger")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class ReservationLedgerController {
+    
+    @Autowired
+    private ReservationEventLog reservationEventLog;
+    
+    @GetMapping("/trips/{tripId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getTripSeats(@PathVariable Long tripId) {
+        try {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("tripId", tripId);
+            response.put("reservedSeats", reservationEventLog.reservedSeats(tripId));
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    @GetMapping("/bookings/{bookingId}/events")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getBookingEvents(@PathVariable Long bookingId) {
+        try {
+            List<ReservationEvent> response = reservationEventLog.getEvents(bookingId);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuild() {
+        try {
+            Map<String, Object> response = reservationEventLog.rebuild();
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package esprit.pfe.covoiturage_final.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import esprit.pfe.covoiturage_final.dto.*;
+import esprit.pfe.covoiturage_final.services.IdempotencyStore;
 import esprit.pfe.covoiturage_final.services.TripService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/trips")
@@ -19,12 +30,21 @@ public class TripController {
     @Autowired
     private TripService tripService;
     
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     @PostMapping
-    public ResponseEntity<?> createTrip(@Valid @RequestBody CreateTripRequest request) {
+    public ResponseEntity<?> createTrip(@Valid @RequestBody CreateTripRequest request,
+                                           @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         try {
             Long driverId = getCurrentUserId();
-            TripResponse response = tripService.createTrip(request, driverId);
-            return ResponseEntity.ok(response);
+            return idempotencyStore.execute("POST /api/trips", driverId, idempotencyKey, request, () -> {
+                TripResponse response = tripService.createTrip(request, driverId);
+                return ResponseEntity.ok(response);
+            });
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -54,13 +74,47 @@ public class TripController {
     @PostMapping("/search")
     public ResponseEntity<?> searchTrips(@Valid @RequestBody SearchTripRequest request) {
         try {
-            List<TripResponse> response = tripService.searchTrips(request);
+            TripPage response = tripService.searchTrips(request);
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
     
+    /**
+     * Streaming variant of /search, selected with "Accept: application/x-ndjson"
+     * or "Accept: text/event-stream". The page is loaded before the first record
+     * is written, then each trip is written and flushed in turn; the last record
+     * carries nextCursor/hasNext. Writes block while the client is not reading,
+     * but no database connection is held by then.
+     */
+    @PostMapping(value = "/search", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamSearchTrips(@Valid @RequestBody SearchTripRequest request,
+                                                                   @RequestHeader(HttpHeaders.ACCEPT) String accept) {
+        boolean sse = MediaType.parseMediaTypes(accept).stream()
+            .anyMatch(MediaType.TEXT_EVENT_STREAM::isCompatibleWith);
+        MediaType contentType = sse ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON;
+        
+        StreamingResponseBody body = out -> {
+            try {
+                TripPage page = tripService.streamSearchTrips(request, trip -> writeRecord(out, sse, "trip", trip));
+                Map<String, Object> end = new LinkedHashMap<>();
+                end.put("nextCursor", page.getNextCursor());
+                end.put("hasNext", page.getHasNext());
+                writeRecord(out, sse, "end", end);
+            } catch (UncheckedIOException e) {
+                // Client went away mid-stream
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                writeRecord(out, sse, "error", Map.of("error", String.valueOf(e.getMessage())));
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(contentType)
+            .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+            .body(body);
+    }
+    
     @GetMapping("/available")
     public ResponseEntity<?> getAvailableTrips() {
         try {
@@ -71,6 +125,17 @@ public class TripController {
         }
     }
     
+    @GetMapping("/available/paged")
+    public ResponseEntity<?> getAvailableTripsPage(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "20") Integer size) {
+        try {
+            TripPage response = tripService.getAvailableTrips(cursor, size);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
     @PutMapping("/{tripId}")
     public ResponseEntity<?> updateTrip(@PathVariable Long tripId, @Valid @RequestBody CreateTripRequest request) {
         try {
@@ -148,6 +213,23 @@ public class TripController {
         }
     }
     
+    private void writeRecord(OutputStream out, boolean sse, String event, Object value) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            if (sse) {
+                out.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+                out.write(json);
+                out.write("\n\n".getBytes(StandardCharsets.UTF_8));
+            } else {
+                out.write(json);
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
     private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getPrincipal() instanceof esprit.pfe.covoiturage_final.entities.User) {
@@ -0,0 +1,35 @@
+package esprit.pfe.covoiturage_final.controllers;
+
+import esprit.pfe.covoiturage_final.services.TripReadModelProjector;
+import esprit.pfe.covoiturage_final.services.TripSearchCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/trip-read-model")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class TripReadModelController {
+
+    @Autowired
+    private TripReadModelProjector tripReadModelProjector;
+
+    @Autowired
+    private TripSearchCache tripSearchCache;
+
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuild() {
+        try {
+            Map<String, Object> response = tripReadModelProjector.rebuild();
+            // Cached pages may have been built from the rows just replaced
+            tripSearchCache.clear();
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
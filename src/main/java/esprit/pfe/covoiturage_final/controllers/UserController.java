@@ -1,5 +1,6 @@
 package esprit.pfe.covoiturage_final.controllers;
 
+import esprit.pfe.covoiturage_final.dto.UserSummary;
 import esprit.pfe.covoiturage_final.entities.User;
 import esprit.pfe.covoiturage_final.entities.UserRole;
 import esprit.pfe.covoiturage_final.services.UserService;
@@ -42,15 +43,15 @@ public class UserController {
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
+    public ResponseEntity<List<UserSummary>> getAllUsers() {
+        List<UserSummary> users = userService.getAllUsers();
         return ResponseEntity.ok(users);
     }
 
     @GetMapping("/role/{role}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<User>> getUsersByRole(@PathVariable UserRole role) {
-        List<User> users = userService.getUsersByRole(role);
+    public ResponseEntity<List<UserSummary>> getUsersByRole(@PathVariable UserRole role) {
+        List<UserSummary> users = userService.getUsersByRole(role);
         return ResponseEntity.ok(users);
     }
 
@@ -0,0 +1,25 @@
+package esprit.pfe.covoiturage_final.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.*;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingDecisionRequest {
+    
+    @NotEmpty(message = "At least one booking ID is required")
+    @Size(max = 100, message = "Cannot decide more than 100 bookings at once")
+    private List<Long> bookingIds;
+    
+    @NotNull(message = "Decision is required")
+    private Decision decision;
+    
+    public enum Decision {
+        CONFIRM, REJECT
+    }
+}
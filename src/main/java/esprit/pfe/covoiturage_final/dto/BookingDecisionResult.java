@@ -0,0 +1,22 @@
+package esprit.pfe.covoiturage_final.dto;
+
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingDecisionResult {
+    
+    private Long bookingId;
+    
+    // Status after the decision, or the unchanged status when it was not applied
+    private Reservation.ReservationStatus status;
+    
+    private boolean applied;
+    
+    // Why the decision was not applied, null otherwise
+    private String error;
+}
@@ -0,0 +1,33 @@
+package esprit.pfe.covoiturage_final.dto;
+
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The columns of a reservation, selected with a constructor expression so
+ * booking lists never load or track Reservation entities.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingSummary {
+    
+    private Long id;
+    private Integer numberOfSeats;
+    private Double totalPrice;
+    private Reservation.ReservationStatus status;
+    private LocalDateTime reservationDate;
+    private String notes;
+    private Long tripId;
+    private Long passengerId;
+    
+    public static BookingSummary of(Reservation reservation) {
+        return new BookingSummary(reservation.getId(), reservation.getNumberOfSeats(), reservation.getTotalPrice(),
+            reservation.getStatus(), reservation.getReservationDate(), reservation.getNotes(),
+            reservation.getVoyageId(), reservation.getPassagerId());
+    }
+}
@@ -50,4 +50,18 @@ public class SearchTripRequest {
     
     private String startCity;
     private String endCity;
+    
+    // Keyset pagination: nextCursor from the previous page, null for the first page
+    private String cursor;
+    
+    @Min(value = 1, message = "Page size must be at least 1")
+    @Max(value = 100, message = "Page size cannot exceed 100")
+    private Integer pageSize = 20;
+    
+    // RELEVANCE returns the best pageSize trips by score, without a next cursor
+    private SortOrder sortBy = SortOrder.DEPARTURE;
+    
+    public enum SortOrder {
+        DEPARTURE, RELEVANCE
+    }
 }
@@ -0,0 +1,40 @@
+package esprit.pfe.covoiturage_final.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position (departureTime, id) of the last trip returned in a page.
+ * Exchanged with clients as an opaque URL-safe string.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripCursor {
+    
+    private LocalDateTime departureTime;
+    private Long id;
+    
+    public String encode() {
+        String raw = departureTime + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static TripCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(',');
+            return new TripCursor(
+                LocalDateTime.parse(raw.substring(0, separator)),
+                Long.parseLong(raw.substring(separator + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+}
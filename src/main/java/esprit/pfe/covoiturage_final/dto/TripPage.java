@@ -0,0 +1,20 @@
+package esprit.pfe.covoiturage_final.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripPage {
+    
+    private List<TripResponse> trips;
+    
+    // Pass back as "cursor" to fetch the next page, null on the last page
+    private String nextCursor;
+    
+    private Boolean hasNext;
+}
@@ -0,0 +1,36 @@
+package esprit.pfe.covoiturage_final.dto;
+
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The scalar columns of a trip, selected with a constructor expression so list
+ * reads never load or track Voyage entities.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripSummary {
+    
+    private Long id;
+    private LocalDateTime departureTime;
+    private LocalDateTime arrivalTime;
+    private Double pricePerSeat;
+    private Integer availableSeats;
+    private Integer maxSeats;
+    private String description;
+    private Voyage.VoyageStatus status;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private Long driverId;
+    
+    public static TripSummary of(Voyage trip) {
+        return new TripSummary(trip.getId(), trip.getDepartureTime(), trip.getArrivalTime(), trip.getPricePerSeat(),
+            trip.getAvailableSeats(), trip.getMaxSeats(), trip.getDescription(), trip.getStatus(),
+            trip.getCreatedAt(), trip.getUpdatedAt(), trip.getConducteurId());
+    }
+}
@@ -0,0 +1,30 @@
+package esprit.pfe.covoiturage_final.dto;
+
+import esprit.pfe.covoiturage_final.entities.UserRole;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The account columns shared by every user type, selected with a constructor
+ * expression for the admin user lists and booking passenger details. Never
+ * carries the password hash.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    
+    private Long id;
+    private String username;
+    private String email;
+    private String firstName;
+    private String lastName;
+    private String phoneNumber;
+    private UserRole role;
+    private Boolean isActive;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
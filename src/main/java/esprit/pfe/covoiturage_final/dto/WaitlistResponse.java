@@ -0,0 +1,29 @@
+package esprit.pfe.covoiturage_final.dto;
+
+import esprit.pfe.covoiturage_final.entities.WaitlistEntry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistResponse {
+    
+    private Long id;
+    private Long tripId;
+    private Long passengerId;
+    private Integer numberOfSeats;
+    private String notes;
+    private WaitlistEntry.WaitlistStatus status;
+    
+    // 1 for the next passenger to be promoted, null once the entry left the waitlist
+    private Long position;
+    
+    // Booking created when the entry was promoted
+    private Long bookingId;
+    
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package esprit.pfe.covoiturage_final.entities;
 
+import esprit.pfe.covoiturage_final.services.DriverChangeListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,6 +10,7 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @DiscriminatorValue("CONDUCTEUR")
+@EntityListeners(DriverChangeListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
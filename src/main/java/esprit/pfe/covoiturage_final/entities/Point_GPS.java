@@ -29,6 +29,10 @@ public class Point_GPS {
     @Enumerated(EnumType.STRING)
     private PointType pointType; // START, END, INTERMEDIATE
     
+    // Position along the route: 0 for START, then intermediate points in order, END last
+    @Column(name = "sequence_number")
+    private Integer sequenceNumber;
+    
     @Column(name = "voyage_id", nullable = false)
     private Long voyageId;
     
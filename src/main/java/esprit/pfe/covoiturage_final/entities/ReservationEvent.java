@@ -0,0 +1,71 @@
+package esprit.pfe.covoiturage_final.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the append-only reservation log. Rows are only ever inserted,
+ * apart from being marked folded once added to their trip's snapshot.
+ */
+@Entity
+@Table(name = "reservation_events", indexes = {
+    @Index(name = "idx_reservation_events_voyage", columnList = "voyage_id, id"),
+    @Index(name = "idx_reservation_events_reservation", columnList = "reservation_id"),
+    @Index(name = "idx_reservation_events_folded", columnList = "folded, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "voyage_id", nullable = false)
+    private Long voyageId;
+    
+    @Column(name = "reservation_id", nullable = false)
+    private Long reservationId;
+    
+    @Column(name = "passager_id", nullable = false)
+    private Long passagerId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false)
+    private EventType type;
+    
+    @Column(name = "seats", nullable = false)
+    private Integer seats;
+    
+    // Change in seats held on the trip: +seats when booked, -seats when cancelled or expired
+    @Column(name = "seat_delta", nullable = false)
+    private Integer seatDelta;
+    
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+    
+    // Whether the event has been added to its trip's snapshot
+    @Column(name = "folded")
+    private Boolean folded;
+    
+    public enum EventType {
+        BOOKED, CONFIRMED, CANCELLED, EXPIRED;
+        
+        public int seatDelta(int seats) {
+            switch (this) {
+                case BOOKED:
+                    return seats;
+                case CANCELLED:
+                case EXPIRED:
+                    return -seats;
+                default:
+                    return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package esprit.pfe.covoiturage_final.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Denormalized copy of a trip as the query endpoints return it, one row per
+ * voyage. The columns hold what searches filter and sort on; points, options
+ * and cities are kept as a JSON document and the driver as a second one, so a
+ * trip is served without joining the source tables.
+ */
+@Entity
+@Table(name = "trip_read_model", indexes = {
+    @Index(name = "idx_trip_read_model_status_departure", columnList = "status, departure_time, voyage_id"),
+    @Index(name = "idx_trip_read_model_driver", columnList = "driver_id, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripReadModel {
+
+    // The voyage id, named id so the trip search predicates apply to both tables
+    @Id
+    @Column(name = "voyage_id")
+    private Long id;
+
+    @Column(name = "departure_time", nullable = false)
+    private LocalDateTime departureTime;
+
+    @Column(name = "arrival_time")
+    private LocalDateTime arrivalTime;
+
+    @Column(name = "price_per_seat", nullable = false)
+    private Double pricePerSeat;
+
+    @Column(name = "available_seats", nullable = false)
+    private Integer availableSeats;
+
+    @Column(name = "max_seats", nullable = false)
+    private Integer maxSeats;
+
+    @Column(name = "description")
+    private String description;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Voyage.VoyageStatus status;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "driver_id", nullable = false)
+    private Long driverId;
+
+    @Column(name = "start_latitude")
+    private Double startLatitude;
+
+    @Column(name = "start_longitude")
+    private Double startLongitude;
+
+    @Column(name = "end_latitude")
+    private Double endLatitude;
+
+    @Column(name = "end_longitude")
+    private Double endLongitude;
+
+    @Column(name = "start_city")
+    private String startCity;
+
+    @Column(name = "end_city")
+    private String endCity;
+
+    // Comma-separated option ids
+    @Column(name = "option_ids")
+    private String optionIds;
+
+    // TripResponse without its driver: points, options and cities
+    @Lob
+    @Column(name = "document", nullable = false)
+    private String document;
+
+    // TripResponse.DriverInfo, rewritten for all of a driver's trips when the driver changes
+    @Lob
+    @Column(name = "driver_document")
+    private String driverDocument;
+}
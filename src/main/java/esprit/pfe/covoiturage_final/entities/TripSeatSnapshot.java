@@ -0,0 +1,32 @@
+package esprit.pfe.covoiturage_final.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Seats held on a trip after folding every reservation event up to lastEventId.
+ */
+@Entity
+@Table(name = "trip_seat_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripSeatSnapshot {
+    
+    @Id
+    @Column(name = "voyage_id")
+    private Long voyageId;
+    
+    @Column(name = "reserved_seats", nullable = false)
+    private Integer reservedSeats;
+    
+    @Column(name = "last_event_id", nullable = false)
+    private Long lastEventId;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,5 +1,6 @@
 package esprit.pfe.covoiturage_final.entities;
 
+import esprit.pfe.covoiturage_final.services.VilleChangeListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,6 +9,7 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "villes")
+@EntityListeners(VilleChangeListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -9,7 +9,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "voyages")
+@Table(name = "voyages", indexes = {
+    @Index(name = "idx_voyages_status_departure", columnList = "status, departure_time, id"),
+    @Index(name = "idx_voyages_status_price", columnList = "status, price_per_seat"),
+    @Index(name = "idx_voyages_conducteur", columnList = "conducteur_id, status")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -68,6 +72,7 @@ public class Voyage {
         joinColumns = @JoinColumn(name = "voyage_id"),
         inverseJoinColumns = @JoinColumn(name = "ville_id")
     )
+    @OrderColumn(name = "position")
     private List<Ville> villes;
     
     // Relationship will be managed by Reservation entity
@@ -0,0 +1,56 @@
+package esprit.pfe.covoiturage_final.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "waitlist_entries", indexes = {
+    @Index(name = "idx_waitlist_voyage_status", columnList = "voyage_id, status, id"),
+    @Index(name = "idx_waitlist_passager", columnList = "passager_id, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "number_of_seats", nullable = false)
+    private Integer numberOfSeats;
+    
+    @Column(name = "notes")
+    private String notes;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private WaitlistStatus status = WaitlistStatus.WAITING;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    // Relationships
+    @Column(name = "voyage_id", nullable = false)
+    private Long voyageId;
+    
+    @Column(name = "passager_id", nullable = false)
+    private Long passagerId;
+    
+    // Reservation created when the entry was promoted
+    @Column(name = "reservation_id")
+    private Long reservationId;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    public enum WaitlistStatus {
+        WAITING, PROMOTED, CANCELLED
+    }
+}
@@ -4,6 +4,7 @@ import esprit.pfe.covoiturage_final.entities.Point_GPS;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,6 +12,12 @@ public interface Point_GPSRepository extends JpaRepository<Point_GPS, Long> {
     
     List<Point_GPS> findByVoyageId(Long voyageId);
     
+    List<Point_GPS> findByVoyageIdOrderBySequenceNumberAsc(Long voyageId);
+    
+    List<Point_GPS> findByVoyageIdIn(Collection<Long> voyageIds);
+    
+    List<Point_GPS> findByVoyageIdInOrderByVoyageIdAscSequenceNumberAsc(Collection<Long> voyageIds);
+    
     List<Point_GPS> findByPointType(Point_GPS.PointType pointType);
     
     List<Point_GPS> findByVoyageIdAndPointType(Long voyageId, Point_GPS.PointType pointType);
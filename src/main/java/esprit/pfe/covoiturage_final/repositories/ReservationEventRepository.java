@@ -0,0 +1,28 @@
+package esprit.pfe.covoiturage_final.repositories;
+
+import esprit.pfe.covoiturage_final.entities.ReservationEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReservationEventRepository extends JpaRepository<ReservationEvent, Long> {
+    
+    List<ReservationEvent> findByReservationIdOrderByIdAsc(Long reservationId);
+    
+    List<ReservationEvent> findByVoyageIdAndIdGreaterThanOrderByIdAsc(Long voyageId, Long id);
+    
+    // Seats held on the trip: its snapshot plus the events not folded into it, read in one statement
+    @Query(value = "SELECT COALESCE((SELECT s.reserved_seats FROM trip_seat_snapshots s WHERE s.voyage_id = :voyageId), 0) + " +
+                   "COALESCE((SELECT SUM(e.seat_delta) FROM reservation_events e " +
+                   "WHERE e.voyage_id = :voyageId AND e.folded = FALSE), 0)", nativeQuery = true)
+    Long sumReservedSeats(@Param("voyageId") Long voyageId);
+    
+    // Rows of {voyage id, sum of seat deltas, highest event id} for the folded or the unfolded events
+    @Query("SELECT e.voyageId, SUM(e.seatDelta), MAX(e.id) FROM ReservationEvent e " +
+           "WHERE e.folded = :folded GROUP BY e.voyageId")
+    List<Object[]> sumSeatDeltaGroupedByVoyage(@Param("folded") boolean folded);
+}
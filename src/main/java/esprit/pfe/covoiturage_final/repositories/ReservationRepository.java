@@ -1,21 +1,35 @@
 package esprit.pfe.covoiturage_final.repositories;
 
+import esprit.pfe.covoiturage_final.dto.BookingSummary;
 import esprit.pfe.covoiturage_final.entities.Reservation;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
     
+    String BOOKING_SUMMARY = "SELECT new esprit.pfe.covoiturage_final.dto.BookingSummary(r.id, r.numberOfSeats, " +
+        "r.totalPrice, r.status, r.reservationDate, r.notes, r.voyageId, r.passagerId) FROM Reservation r ";
+    
     List<Reservation> findByPassagerId(Long passagerId);
     
     List<Reservation> findByVoyageId(Long voyageId);
     
+    @Query(BOOKING_SUMMARY + "WHERE r.passagerId = :passagerId")
+    List<BookingSummary> findSummariesByPassagerId(@Param("passagerId") Long passagerId);
+    
+    @Query(BOOKING_SUMMARY + "WHERE r.voyageId = :voyageId")
+    List<BookingSummary> findSummariesByVoyageId(@Param("voyageId") Long voyageId);
+    
     List<Reservation> findByStatus(Reservation.ReservationStatus status);
     
     List<Reservation> findByReservationDateBetween(LocalDateTime startDate, LocalDateTime endDate);
@@ -24,6 +38,51 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     
     List<Reservation> findByVoyageIdAndStatus(Long voyageId, Reservation.ReservationStatus status);
     
+    boolean existsByVoyageIdAndPassagerIdAndStatusIn(Long voyageId, Long passagerId,
+                                                     Collection<Reservation.ReservationStatus> statuses);
+    
     @Query("SELECT COUNT(r) FROM Reservation r WHERE r.voyageId = :voyageId AND r.status = 'CONFIRMED'")
     Long countConfirmedReservationsByVoyageId(@Param("voyageId") Long voyageId);
+    
+    @Query("SELECT COALESCE(SUM(r.numberOfSeats), 0) FROM Reservation r " +
+           "WHERE r.voyageId = :voyageId AND r.status IN ('PENDING', 'CONFIRMED')")
+    Long sumActiveSeatsByVoyageId(@Param("voyageId") Long voyageId);
+    
+    // Rows of {voyage id, seats held by its PENDING and CONFIRMED reservations}
+    @Query("SELECT r.voyageId, SUM(r.numberOfSeats) FROM Reservation r " +
+           "WHERE r.status IN ('PENDING', 'CONFIRMED') GROUP BY r.voyageId")
+    List<Object[]> sumActiveSeatsGroupedByVoyage();
+    
+    // Locks the rows so a concurrent confirm or cancel waits for the expiry batch
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Reservation> findByIdInAndStatus(Collection<Long> ids, Reservation.ReservationStatus status);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Reservation r SET r.status = 'CANCELLED' WHERE r.id IN :ids AND r.status = 'PENDING'")
+    int cancelPending(@Param("ids") Collection<Long> ids);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Reservation r SET r.status = 'CONFIRMED' WHERE r.id = :id AND r.status = 'PENDING'")
+    int confirmIfPending(@Param("id") Long id);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Reservation r SET r.status = 'CONFIRMED' WHERE r.id IN :ids AND r.status = 'PENDING'")
+    int confirmPending(@Param("ids") Collection<Long> ids);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Reservation> findByVoyageIdAndIdIn(Long voyageId, Collection<Long> ids);
+    
+    // Locking read, so it sees every booking committed so far rather than the transaction's snapshot
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Reservation r WHERE r.voyageId = :voyageId AND r.status IN ('PENDING', 'CONFIRMED')")
+    List<Reservation> findActiveByVoyageIdForUpdate(@Param("voyageId") Long voyageId);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Reservation r SET r.status = 'CANCELLED' WHERE r.id IN :ids AND r.status IN ('PENDING', 'CONFIRMED')")
+    int cancelActive(@Param("ids") Collection<Long> ids);
+    
+    // Only one of several concurrent cancellations of the same booking gets 1 back
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Reservation r SET r.status = 'CANCELLED' WHERE r.id = :id AND r.status IN ('PENDING', 'CONFIRMED')")
+    int cancelIfActive(@Param("id") Long id);
 }
@@ -0,0 +1,63 @@
+package esprit.pfe.covoiturage_final.repositories;
+
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import esprit.pfe.covoiturage_final.entities.TripReadModel;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TripReadModelRepository extends JpaRepository<TripReadModel, Long>, JpaSpecificationExecutor<TripReadModel> {
+
+    List<TripReadModel> findByDriverId(Long driverId);
+
+    List<TripReadModel> findByDriverIdAndStatus(Long driverId, Voyage.VoyageStatus status);
+
+    @Query("SELECT t FROM TripReadModel t WHERE t.availableSeats > 0 AND t.status = 'PLANNED'")
+    List<TripReadModel> findAvailableTrips();
+
+    // Trips in the given status on which the passenger holds a booking in the given status
+    @Query("SELECT t FROM TripReadModel t WHERE t.status = :status AND t.id IN (SELECT r.voyageId FROM Reservation r " +
+           "WHERE r.passagerId = :passagerId AND r.status = :bookingStatus)")
+    List<TripReadModel> findByPassagerId(@Param("passagerId") Long passagerId,
+                                         @Param("status") Voyage.VoyageStatus status,
+                                         @Param("bookingStatus") Reservation.ReservationStatus bookingStatus);
+
+    @Modifying
+    @Query("UPDATE TripReadModel t SET t.status = :status, t.availableSeats = :seats, t.updatedAt = :updatedAt " +
+           "WHERE t.id = :id")
+    int updateState(@Param("id") Long id, @Param("status") Voyage.VoyageStatus status,
+                    @Param("seats") Integer seats, @Param("updatedAt") LocalDateTime updatedAt);
+
+    // With the seat ledger on, seats are written back by its flusher instead
+    @Modifying
+    @Query("UPDATE TripReadModel t SET t.status = :status, t.updatedAt = :updatedAt WHERE t.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") Voyage.VoyageStatus status,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE TripReadModel t SET t.availableSeats = :seats WHERE t.id = :id")
+    int updateSeats(@Param("id") Long id, @Param("seats") Integer seats);
+
+    // Copies the seat count the trip has in voyages
+    @Modifying
+    @Query("UPDATE TripReadModel t SET t.availableSeats = (SELECT v.availableSeats FROM Voyage v WHERE v.id = t.id) " +
+           "WHERE t.id = :id")
+    int syncSeats(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE TripReadModel t SET t.driverDocument = :document WHERE t.driverId = :driverId")
+    int updateDriverDocument(@Param("driverId") Long driverId, @Param("document") String document);
+
+    // Rows whose voyage no longer exists
+    @Modifying
+    @Query("DELETE FROM TripReadModel t WHERE t.id NOT IN (SELECT v.id FROM Voyage v)")
+    int deleteOrphans();
+}
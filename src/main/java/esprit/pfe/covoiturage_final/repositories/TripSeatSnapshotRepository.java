@@ -0,0 +1,13 @@
+package esprit.pfe.covoiturage_final.repositories;
+
+import esprit.pfe.covoiturage_final.entities.TripSeatSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TripSeatSnapshotRepository extends JpaRepository<TripSeatSnapshot, Long> {
+    
+    @Query("SELECT COALESCE(MAX(s.lastEventId), 0) FROM TripSeatSnapshot s")
+    Long findMaxLastEventId();
+}
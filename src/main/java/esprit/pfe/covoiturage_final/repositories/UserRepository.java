@@ -1,15 +1,23 @@
 package esprit.pfe.covoiturage_final.repositories;
 
+import esprit.pfe.covoiturage_final.dto.UserSummary;
 import esprit.pfe.covoiturage_final.entities.User;
 import esprit.pfe.covoiturage_final.entities.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    
+    String USER_SUMMARY = "SELECT new esprit.pfe.covoiturage_final.dto.UserSummary(u.id, u.username, u.email, " +
+        "u.firstName, u.lastName, u.phoneNumber, u.role, u.isActive, u.createdAt, u.updatedAt) FROM User u ";
+    
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
     Optional<User> findByUsernameOrEmail(String username, String email);
@@ -17,4 +25,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     List<User> findByRole(UserRole role);
     List<User> findByIsActive(Boolean isActive);
+    
+    @Query(USER_SUMMARY + "ORDER BY u.id")
+    List<UserSummary> findAllSummaries();
+    
+    @Query(USER_SUMMARY + "WHERE u.role = :role ORDER BY u.id")
+    List<UserSummary> findSummariesByRole(@Param("role") UserRole role);
+    
+    @Query(USER_SUMMARY + "WHERE u.id IN :ids")
+    List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
 }
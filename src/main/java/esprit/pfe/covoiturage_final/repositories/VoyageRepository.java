@@ -1,21 +1,46 @@
 package esprit.pfe.covoiturage_final.repositories;
 
+import esprit.pfe.covoiturage_final.dto.TripSummary;
 import esprit.pfe.covoiturage_final.entities.Voyage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface VoyageRepository extends JpaRepository<Voyage, Long> {
+public interface VoyageRepository extends JpaRepository<Voyage, Long>, JpaSpecificationExecutor<Voyage> {
+    
+    String TRIP_SUMMARY = "SELECT new esprit.pfe.covoiturage_final.dto.TripSummary(v.id, v.departureTime, " +
+        "v.arrivalTime, v.pricePerSeat, v.availableSeats, v.maxSeats, v.description, v.status, v.createdAt, " +
+        "v.updatedAt, v.conducteurId) FROM Voyage v ";
     
     List<Voyage> findByConducteurId(Long conducteurId);
     
+    // Locks the row so seat decrements and status changes wait until the caller commits
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM Voyage v WHERE v.id = :id")
+    Optional<Voyage> findByIdForUpdate(@Param("id") Long id);
+    
     List<Voyage> findByStatus(Voyage.VoyageStatus status);
     
+    // Shared lock: ledger bookings take it so a status change waits for them, and they for it
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT v.status FROM Voyage v WHERE v.id = :id")
+    Voyage.VoyageStatus findStatusForShare(@Param("id") Long id);
+    
+    @Query("SELECT v.maxSeats FROM Voyage v WHERE v.id = :voyageId")
+    Integer findMaxSeatsById(@Param("voyageId") Long voyageId);
+    
     List<Voyage> findByDepartureTimeAfter(LocalDateTime departureTime);
     
     List<Voyage> findByPricePerSeatBetween(Double minPrice, Double maxPrice);
@@ -25,6 +50,18 @@ public interface VoyageRepository extends JpaRepository<Voyage, Long> {
     @Query("SELECT v FROM Voyage v JOIN v.villes ville WHERE ville.id = :villeId")
     List<Voyage> findByVilleId(@Param("villeId") Long villeId);
     
+    // Rows of {voyage id, ville id, position of the ville along the route}
+    @Query("SELECT v.id, ville.id, INDEX(ville) FROM Voyage v JOIN v.villes ville WHERE v.status = :status")
+    List<Object[]> findCityPositionsByStatus(@Param("status") Voyage.VoyageStatus status);
+    
+    // Rows of {voyage id, option} for the given trips
+    @Query("SELECT v.id, o FROM Voyage v JOIN v.options o WHERE v.id IN :voyageIds")
+    List<Object[]> findOptionsByVoyageIds(@Param("voyageIds") Collection<Long> voyageIds);
+    
+    // Rows of {voyage id, city} for the given trips, each trip's cities in route order
+    @Query("SELECT v.id, ville FROM Voyage v JOIN v.villes ville WHERE v.id IN :voyageIds ORDER BY v.id, INDEX(ville)")
+    List<Object[]> findCitiesByVoyageIds(@Param("voyageIds") Collection<Long> voyageIds);
+    
     @Query("SELECT v FROM Voyage v WHERE v.departureTime BETWEEN :startDate AND :endDate")
     List<Voyage> findByDepartureTimeBetween(@Param("startDate") LocalDateTime startDate, 
                                            @Param("endDate") LocalDateTime endDate);
@@ -33,4 +70,29 @@ public interface VoyageRepository extends JpaRepository<Voyage, Long> {
     
     @Query("SELECT v FROM Voyage v WHERE v.availableSeats > 0 AND v.status = 'PLANNED'")
     List<Voyage> findAvailableTrips();
+    
+    @Query(TRIP_SUMMARY + "WHERE v.id IN :voyageIds")
+    List<TripSummary> findSummariesByIdIn(@Param("voyageIds") Collection<Long> voyageIds);
+    
+    // Keyset batches in id order for walking the whole table, share-locked until the caller commits
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT v FROM Voyage v WHERE v.id > :afterId ORDER BY v.id")
+    List<Voyage> findBatchAfterForShare(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Atomic seat decrement: returns 0 when the trip is not planned or has too few seats left
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Voyage v SET v.availableSeats = v.availableSeats - :seats " +
+           "WHERE v.id = :voyageId AND v.status = 'PLANNED' AND v.availableSeats >= :seats")
+    int reserveSeats(@Param("voyageId") Long voyageId, @Param("seats") int seats);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Voyage v SET v.availableSeats = v.availableSeats + :seats WHERE v.id = :voyageId")
+    int releaseSeats(@Param("voyageId") Long voyageId, @Param("seats") int seats);
+    
+    // Recounts a planned trip's free seats from its PENDING and CONFIRMED bookings in one statement
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Voyage v SET v.availableSeats = v.maxSeats - (SELECT COALESCE(SUM(r.numberOfSeats), 0) " +
+           "FROM Reservation r WHERE r.voyageId = v.id AND r.status IN ('PENDING', 'CONFIRMED')) " +
+           "WHERE v.id = :voyageId AND v.status = 'PLANNED'")
+    int recountSeats(@Param("voyageId") Long voyageId);
 }
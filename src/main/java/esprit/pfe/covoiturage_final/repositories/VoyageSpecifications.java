@@ -0,0 +1,59 @@
+package esprit.pfe.covoiturage_final.repositories;
+
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Reusable predicates for trip search queries on {@link VoyageRepository} and
+ * {@link TripReadModelRepository}, whose rows share the attribute names used here.
+ */
+public final class VoyageSpecifications {
+    
+    private VoyageSpecifications() {
+    }
+    
+    public static <T> Specification<T> hasStatus(Voyage.VoyageStatus status) {
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+    
+    public static <T> Specification<T> departureAfter(LocalDateTime departureTime) {
+        return (root, query, cb) -> cb.greaterThan(root.get("departureTime"), departureTime);
+    }
+    
+    public static <T> Specification<T> departureBefore(LocalDateTime departureTime) {
+        return (root, query, cb) -> cb.lessThan(root.get("departureTime"), departureTime);
+    }
+    
+    public static <T> Specification<T> priceAtLeast(Double minPrice) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("pricePerSeat"), minPrice);
+    }
+    
+    public static <T> Specification<T> priceAtMost(Double maxPrice) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("pricePerSeat"), maxPrice);
+    }
+    
+    public static <T> Specification<T> seatsAtLeast(Integer seats) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("availableSeats"), seats);
+    }
+    
+    public static <T> Specification<T> idIn(Collection<Long> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+    
+    /**
+     * Keyset predicate: trips strictly after the (departureTime, id) cursor,
+     * matching the {@code ORDER BY departureTime, id} used for paging.
+     */
+    public static <T> Specification<T> afterCursor(LocalDateTime departureTime, Long id) {
+        return (root, query, cb) -> cb.or(
+            cb.greaterThan(root.get("departureTime"), departureTime),
+            cb.and(
+                cb.equal(root.get("departureTime"), departureTime),
+                cb.greaterThan(root.get("id"), id)
+            )
+        );
+    }
+}
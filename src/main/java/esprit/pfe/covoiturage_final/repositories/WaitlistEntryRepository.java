@@ -0,0 +1,46 @@
+package esprit.pfe.covoiturage_final.repositories;
+
+import esprit.pfe.covoiturage_final.entities.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+    
+    List<WaitlistEntry> findByStatusOrderByIdAsc(WaitlistEntry.WaitlistStatus status);
+    
+    List<WaitlistEntry> findByPassagerIdAndStatus(Long passagerId, WaitlistEntry.WaitlistStatus status);
+    
+    boolean existsByVoyageIdAndPassagerIdAndStatus(Long voyageId, Long passagerId, WaitlistEntry.WaitlistStatus status);
+    
+    long countByVoyageIdAndStatusAndIdLessThan(Long voyageId, WaitlistEntry.WaitlistStatus status, Long id);
+    
+    // Conditional so an entry is promoted or cancelled at most once
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WaitlistEntry w SET w.status = 'PROMOTED' WHERE w.id = :id AND w.status = 'WAITING'")
+    int markPromoted(@Param("id") Long id);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WaitlistEntry w SET w.status = 'WAITING' WHERE w.id = :id AND w.status = 'PROMOTED' AND w.reservationId IS NULL")
+    int returnToWaiting(@Param("id") Long id);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WaitlistEntry w SET w.reservationId = :reservationId WHERE w.id = :id")
+    int linkReservation(@Param("id") Long id, @Param("reservationId") Long reservationId);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WaitlistEntry w SET w.status = 'CANCELLED' WHERE w.id = :id AND w.status = 'WAITING'")
+    int cancelIfWaiting(@Param("id") Long id);
+    
+    @Query("SELECT DISTINCT w.passagerId FROM WaitlistEntry w WHERE w.voyageId = :voyageId AND w.status = 'WAITING'")
+    List<Long> findWaitingPassengerIdsByVoyageId(@Param("voyageId") Long voyageId);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WaitlistEntry w SET w.status = 'CANCELLED' WHERE w.voyageId = :voyageId AND w.status = 'WAITING'")
+    int cancelWaitingByVoyageId(@Param("voyageId") Long voyageId);
+}
@@ -0,0 +1,138 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.dto.BookingResponse;
+import esprit.pfe.covoiturage_final.dto.BookingSummary;
+import esprit.pfe.covoiturage_final.dto.TripSummary;
+import esprit.pfe.covoiturage_final.dto.UserSummary;
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import esprit.pfe.covoiturage_final.repositories.UserRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds BookingResponses for a whole list of reservations at once.
+ *
+ * The trips, their drivers and the passengers are collected as id sets, so a
+ * trip or driver shared by many bookings is loaded once, and each set is
+ * resolved with a single IN query: three queries per list however long it is,
+ * two once its drivers are in the {@link DriverSummaryCache}. Trips and
+ * passengers are read as projections, never as managed entities.
+ */
+@Component
+public class BookingResponseAssembler {
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private DriverSummaryCache driverSummaryCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    public BookingResponse toResponse(Reservation reservation) {
+        return toSummaryResponses(List.of(BookingSummary.of(reservation))).get(0);
+    }
+
+    /**
+     * One response per reservation, in the order given.
+     */
+    public List<BookingResponse> toResponses(List<Reservation> reservations) {
+        List<BookingSummary> summaries = new ArrayList<>(reservations.size());
+        for (Reservation reservation : reservations) {
+            summaries.add(BookingSummary.of(reservation));
+        }
+        return toSummaryResponses(summaries);
+    }
+
+    /**
+     * One response per projected reservation, in the order given.
+     */
+    public List<BookingResponse> toSummaryResponses(List<BookingSummary> bookings) {
+        if (bookings.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> tripIds = new HashSet<>();
+        Set<Long> passengerIds = new HashSet<>();
+        for (BookingSummary booking : bookings) {
+            tripIds.add(booking.getTripId());
+            passengerIds.add(booking.getPassengerId());
+        }
+
+        Map<Long, TripSummary> trips = new HashMap<>();
+        Set<Long> driverIds = new HashSet<>();
+        for (TripSummary trip : voyageRepository.findSummariesByIdIn(tripIds)) {
+            trips.put(trip.getId(), trip);
+            driverIds.add(trip.getDriverId());
+        }
+
+        Map<Long, DriverSummaryCache.DriverSummary> drivers = driverSummaryCache.getAll(driverIds);
+
+        Map<Long, UserSummary> passengers = new HashMap<>();
+        for (UserSummary passenger : userRepository.findSummariesByIdIn(passengerIds)) {
+            passengers.put(passenger.getId(), passenger);
+        }
+
+        // Bookings of the same trip share its TripInfo
+        Map<Long, BookingResponse.TripInfo> tripInfos = new HashMap<>();
+        List<BookingResponse> responses = new ArrayList<>(bookings.size());
+        for (BookingSummary booking : bookings) {
+            BookingResponse response = new BookingResponse();
+            response.setId(booking.getId());
+            response.setNumberOfSeats(booking.getNumberOfSeats());
+            response.setTotalPrice(booking.getTotalPrice());
+            response.setStatus(booking.getStatus());
+            response.setReservationDate(booking.getReservationDate());
+            response.setNotes(booking.getNotes());
+
+            TripSummary trip = trips.get(booking.getTripId());
+            if (trip != null) {
+                response.setTrip(tripInfos.computeIfAbsent(trip.getId(),
+                    id -> toTripInfo(trip, drivers.get(trip.getDriverId()))));
+            }
+
+            UserSummary passenger = passengers.get(booking.getPassengerId());
+            if (passenger != null) {
+                response.setPassenger(toPassengerInfo(passenger));
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private BookingResponse.TripInfo toTripInfo(TripSummary trip, DriverSummaryCache.DriverSummary driver) {
+        BookingResponse.TripInfo tripInfo = new BookingResponse.TripInfo();
+        tripInfo.setId(trip.getId());
+        tripInfo.setDepartureTime(trip.getDepartureTime());
+        tripInfo.setArrivalTime(trip.getArrivalTime());
+        tripInfo.setPricePerSeat(trip.getPricePerSeat());
+        tripInfo.setDescription(trip.getDescription());
+        tripInfo.setStatus(trip.getStatus().name());
+        if (driver != null) {
+            tripInfo.setDriverName(driver.fullName());
+            tripInfo.setVehicleModel(driver.vehicleModel());
+            tripInfo.setVehicleColor(driver.vehicleColor());
+            tripInfo.setVehiclePlate(driver.vehiclePlate());
+        }
+        return tripInfo;
+    }
+
+    private BookingResponse.PassengerInfo toPassengerInfo(UserSummary passenger) {
+        BookingResponse.PassengerInfo passengerInfo = new BookingResponse.PassengerInfo();
+        passengerInfo.setId(passenger.getId());
+        passengerInfo.setUsername(passenger.getUsername());
+        passengerInfo.setFirstName(passenger.getFirstName());
+        passengerInfo.setLastName(passenger.getLastName());
+        passengerInfo.setPhoneNumber(passenger.getPhoneNumber());
+        return passengerInfo;
+    }
+}
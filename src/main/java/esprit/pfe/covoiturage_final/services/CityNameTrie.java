@@ -0,0 +1,167 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Ville;
+import esprit.pfe.covoiturage_final.repositories.VilleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix trie over normalized city names, used for autocomplete and
+ * name lookups instead of LIKE queries.
+ *
+ * Names are normalized by stripping accents, lower-casing and collapsing
+ * punctuation to single spaces, so "Gabès", "gabes" and "GABES" are the same
+ * key. Every name is indexed from its first letter and from the start of each
+ * following word. Each node keeps its best completions precomputed, so a
+ * lookup only walks the query's characters.
+ */
+@Component
+public class CityNameTrie {
+
+    private static final Logger logger = LoggerFactory.getLogger(CityNameTrie.class);
+
+    public static final int MAX_COMPLETIONS = 20;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Shorter names first: "Sfax" ranks above "Sfax El Jadida" for "sf"
+    private static final Comparator<Ville> RANK = Comparator
+        .comparingInt((Ville city) -> city.getName().length())
+        .thenComparing(city -> normalize(city.getName()));
+
+    @Autowired
+    private VilleRepository villeRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(new Node(), new HashMap<>());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Ville> cities = new ArrayList<>(villeRepository.findAll());
+        cities.sort(RANK);
+
+        Node root = new Node();
+        Map<String, Ville> exact = new HashMap<>();
+        // Whole-name matches go in first so they rank above word matches at every node
+        for (Ville city : cities) {
+            String key = normalize(city.getName());
+            exact.putIfAbsent(key, city);
+            insert(root, key, city);
+        }
+        for (Ville city : cities) {
+            String key = normalize(city.getName());
+            for (int i = key.indexOf(' '); i >= 0; i = key.indexOf(' ', i + 1)) {
+                insert(root, key.substring(i + 1), city);
+            }
+        }
+
+        snapshot = new Snapshot(root, exact);
+        logger.info("City name trie built with {} cities", exact.size());
+    }
+
+    /**
+     * Rebuild once the current transaction commits, or right away outside one.
+     */
+    public void refresh() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // One rebuild per transaction, however many rows it touches
+            if (TransactionSynchronizationManager.hasResource(this)) {
+                return;
+            }
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuild();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CityNameTrie.this);
+                }
+            });
+        } else {
+            rebuild();
+        }
+    }
+
+    /**
+     * Up to limit cities whose name, or one of its words, starts with the prefix.
+     * Whole-name matches come first, then shorter names.
+     */
+    public List<Ville> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Node node = snapshot.root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null) {
+            return new ArrayList<>();
+        }
+        List<Ville> completions = node.completions;
+        return new ArrayList<>(completions.subList(0, Math.min(limit, completions.size())));
+    }
+
+    /**
+     * The city with exactly this name after normalization, or null.
+     */
+    public Ville findExact(String name) {
+        return snapshot.exact.get(normalize(name));
+    }
+
+    /**
+     * The city with exactly this name, otherwise the best completion of it, or null.
+     */
+    public Ville findBest(String name) {
+        Ville city = findExact(name);
+        if (city != null) {
+            return city;
+        }
+        List<Ville> completions = complete(name, 1);
+        return completions.isEmpty() ? null : completions.get(0);
+    }
+
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static void insert(Node root, String key, Ville city) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            if (node.completions.size() < MAX_COMPLETIONS && !node.completions.contains(city)) {
+                node.completions.add(city);
+            }
+        }
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Ville> completions = new ArrayList<>();
+    }
+
+    private record Snapshot(Node root, Map<String, Ville> exact) {
+    }
+}
@@ -0,0 +1,46 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Conducteur;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener evicting a driver's cached summary whenever its row is updated
+ * or removed: profile edits, rating and trip count changes, deactivation.
+ *
+ * The summary is evicted at flush and again once the transaction completes, so
+ * a reader that reloads it in between cannot keep the pre-commit row cached.
+ * Once an update commits, the copy of the summary held by each of the driver's
+ * trips in the read model is rewritten too.
+ */
+public class DriverChangeListener {
+
+    @Autowired
+    private DriverSummaryCache driverSummaryCache;
+
+    @Autowired
+    @Lazy
+    private TripReadModelProjector tripReadModelProjector;
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(Conducteur driver) {
+        Long driverId = driver.getId();
+        driverSummaryCache.evict(driverId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    driverSummaryCache.evict(driverId);
+                    if (status == STATUS_COMMITTED) {
+                        tripReadModelProjector.refreshDriver(driverId);
+                    }
+                }
+            });
+        }
+    }
+}
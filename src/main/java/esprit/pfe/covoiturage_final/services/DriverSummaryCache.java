@@ -0,0 +1,140 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Conducteur;
+import esprit.pfe.covoiturage_final.repositories.ConducteurRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of the driver fields shown in trip and booking responses,
+ * keyed by driver id.
+ *
+ * Summaries are immutable, so the same instance can be handed to every
+ * response that mentions the driver. Misses are loaded together with one IN
+ * query. Any write to a Conducteur row evicts its summary through
+ * {@link DriverChangeListener}; a load that overlaps an eviction is not cached,
+ * so a stale row read before the write cannot be put back afterwards.
+ */
+@Component
+public class DriverSummaryCache {
+
+    @Autowired
+    private ConducteurRepository conducteurRepository;
+
+    @Value("${app.driverCacheMaxSize:5000}")
+    private int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Bumped on every invalidation, checked before caching a load
+    private long generation;
+
+    private final LinkedHashMap<Long, DriverSummary> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, DriverSummary> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Summaries of the given drivers. Ids with no Conducteur row are absent.
+     */
+    public Map<Long, DriverSummary> getAll(Collection<Long> driverIds) {
+        Map<Long, DriverSummary> summaries = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long loadGeneration;
+        synchronized (this) {
+            for (Long driverId : driverIds) {
+                DriverSummary summary = entries.get(driverId);
+                if (summary != null) {
+                    summaries.put(driverId, summary);
+                } else if (driverId != null) {
+                    missing.add(driverId);
+                }
+            }
+            hits.addAndGet(summaries.size());
+            misses.addAndGet(missing.size());
+            loadGeneration = generation;
+        }
+        if (missing.isEmpty()) {
+            return summaries;
+        }
+
+        List<DriverSummary> loaded = new ArrayList<>(missing.size());
+        for (Conducteur conducteur : conducteurRepository.findAllById(missing)) {
+            DriverSummary summary = DriverSummary.of(conducteur);
+            loaded.add(summary);
+            summaries.put(summary.id(), summary);
+        }
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                for (DriverSummary summary : loaded) {
+                    entries.put(summary.id(), summary);
+                }
+            }
+        }
+        return summaries;
+    }
+
+    public DriverSummary get(Long driverId) {
+        return getAll(List.of(driverId)).get(driverId);
+    }
+
+    public synchronized void evict(Long driverId) {
+        generation++;
+        if (entries.remove(driverId) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    public record DriverSummary(Long id, String username, String firstName, String lastName, String phoneNumber,
+                                String vehicleModel, String vehicleColor, String vehiclePlate,
+                                Double rating, Integer totalTrips, Boolean isVerified) {
+
+        static DriverSummary of(Conducteur conducteur) {
+            return new DriverSummary(conducteur.getId(), conducteur.getUsername(), conducteur.getFirstName(),
+                conducteur.getLastName(), conducteur.getPhoneNumber(), conducteur.getVehicleModel(),
+                conducteur.getVehicleColor(), conducteur.getVehiclePlate(), conducteur.getRating(),
+                conducteur.getTotalTrips(), conducteur.getIsVerified());
+        }
+
+        public String fullName() {
+            return firstName + " " + lastName;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package esprit.pfe.covoiturage_final.services;
+
+/**
+ * Shared geographic helpers used by the trip search components.
+ */
+public final class GeoUtils {
+    
+    public static final double EARTH_RADIUS_KM = 6371.0;
+    
+    // Length of one degree of latitude in km
+    public static final double KM_PER_DEGREE_LAT = 111.32;
+    
+    private GeoUtils() {
+    }
+    
+    /**
+     * Great-circle distance between two coordinates using the Haversine formula.
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+    
+    /**
+     * Longitude span (in degrees) covered by the given distance at the given latitude.
+     */
+    public static double lonDegreesForKm(double latitude, double km) {
+        double cos = Math.cos(Math.toRadians(latitude));
+        if (cos < 0.01) {
+            return 360.0;
+        }
+        return km / (KM_PER_DEGREE_LAT * cos);
+    }
+}
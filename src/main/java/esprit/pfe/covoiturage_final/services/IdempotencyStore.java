@@ -0,0 +1,182 @@
+package esprit.pfe.covoiturage_final.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, TTL-evicted store of responses to requests sent with an
+ * Idempotency-Key header.
+ *
+ * The first request with a key runs and its response is kept together with a
+ * fingerprint of the request body. A retry with the same key and body gets the
+ * stored response back without running again; a retry with a different body is
+ * rejected. Duplicates arriving while the first request is still running wait
+ * on its result instead of running in parallel. Requests that fail with an
+ * exception are not kept, so they can be retried.
+ *
+ * When the store is full the oldest finished entries make room. An entry whose
+ * request is still running is never evicted, since a duplicate would then run
+ * the action again; a new key is rejected while every entry is still running.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.idempotencyMaxKeys:10000}")
+    private int maxKeys;
+
+    @Value("${app.idempotencyTtlSeconds:86400}")
+    private long ttlSeconds;
+
+    private final AtomicLong replays = new AtomicLong();
+
+    // Insertion order, so the eldest entry is also the one closest to expiry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Run the action once per (operation, user, key). Without a key the action
+     * simply runs.
+     */
+    public ResponseEntity<?> execute(String operation, Long userId, String key, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+
+        String storeKey = operation + ":" + userId + ":" + key;
+        String fingerprint = fingerprint(request);
+        CompletableFuture<ResponseEntity<?>> owned = new CompletableFuture<>();
+        Entry existing;
+        synchronized (this) {
+            existing = entries.get(storeKey);
+            if (existing != null && existing.expiresAt < System.currentTimeMillis()) {
+                entries.remove(storeKey);
+                existing = null;
+            }
+            if (existing == null) {
+                purgeExpired();
+                if (!makeRoom()) {
+                    throw new RuntimeException("Too many requests in progress, please retry later");
+                }
+                entries.put(storeKey, new Entry(fingerprint, owned, System.currentTimeMillis() + ttlSeconds * 1000));
+            }
+        }
+
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new RuntimeException("Idempotency-Key was already used with a different request");
+            }
+            replays.incrementAndGet();
+            return replayed(await(existing.response));
+        }
+
+        try {
+            ResponseEntity<?> response = action.get();
+            owned.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                entries.remove(storeKey);
+            }
+            owned.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxKeys);
+        stats.put("replays", replays.get());
+        return stats;
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiresAt >= now) {
+                break;
+            }
+            if (entry.response.isDone()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Evict the oldest finished entries until a new one fits. Returns false if
+     * the store is still full, every remaining entry's request still running.
+     */
+    private boolean makeRoom() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() >= maxKeys && it.hasNext()) {
+            if (it.next().response.isDone()) {
+                it.remove();
+            }
+        }
+        return entries.size() < maxKeys;
+    }
+
+    private static ResponseEntity<?> await(CompletableFuture<ResponseEntity<?>> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static ResponseEntity<?> replayed(ResponseEntity<?> response) {
+        return ResponseEntity.status(response.getStatusCode())
+            .headers(response.getHeaders())
+            .header(REPLAYED_HEADER, "true")
+            .body(response.getBody());
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] body = objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Could not fingerprint request", e);
+        }
+    }
+
+    private static class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<ResponseEntity<?>> response;
+        private final long expiresAt;
+
+        private Entry(String fingerprint, CompletableFuture<ResponseEntity<?>> response, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
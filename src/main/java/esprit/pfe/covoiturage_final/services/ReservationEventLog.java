@@ -0,0 +1,348 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import esprit.pfe.covoiturage_final.entities.ReservationEvent;
+import esprit.pfe.covoiturage_final.entities.TripSeatSnapshot;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.ReservationEventRepository;
+import esprit.pfe.covoiturage_final.repositories.TripSeatSnapshotRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of reservation events with periodic per-trip snapshots.
+ *
+ * Every booking, confirmation, cancellation and expiry appends an event. The
+ * events of one transaction are written in a single JDBC batch just before it
+ * commits, so they are durable exactly when the change they describe is. A
+ * background task folds new events into trip_seat_snapshots, so a trip's held
+ * seats are its snapshot plus the few events not folded yet. Event ids are not
+ * assigned in commit order, so instead of an id watermark each event is marked
+ * folded in the transaction that adds it to its snapshot: an event committed
+ * late with a lower id is still picked up by the next run. Replaying the whole
+ * log rebuilds the snapshots and repairs voyages.available_seats.
+ */
+@Component
+public class ReservationEventLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationEventLog.class);
+
+    private static final String INSERT_EVENT = "INSERT INTO reservation_events " +
+        "(voyage_id, reservation_id, passager_id, type, seats, seat_delta, occurred_at, folded) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, FALSE)";
+
+    private static final String SELECT_UNFOLDED = "SELECT id, voyage_id, seat_delta FROM reservation_events " +
+        "WHERE folded = FALSE ORDER BY id LIMIT ?";
+
+    private static final String MARK_FOLDED = "UPDATE reservation_events SET folded = TRUE WHERE id = ? AND folded = FALSE";
+
+    // Events logged before the folded column existed were folded up to the highest id in the snapshots
+    private static final String MARK_LEGACY_EVENTS = "UPDATE reservation_events " +
+        "SET folded = CASE WHEN id <= ? THEN TRUE ELSE FALSE END WHERE folded IS NULL";
+
+    private static final String UPDATE_SNAPSHOT = "UPDATE trip_seat_snapshots " +
+        "SET reserved_seats = reserved_seats + ?, last_event_id = GREATEST(last_event_id, ?), updated_at = ? " +
+        "WHERE voyage_id = ?";
+
+    private static final int FOLD_BATCH_SIZE = 5000;
+
+    private static final String INSERT_SNAPSHOT = "INSERT INTO trip_seat_snapshots " +
+        "(reserved_seats, last_event_id, updated_at, voyage_id) VALUES (?, ?, ?, ?)";
+
+    // Seeds the log once from the reservations that predate it
+    private static final String BACKFILL_EVENTS = "INSERT INTO reservation_events " +
+        "(voyage_id, reservation_id, passager_id, type, seats, seat_delta, occurred_at, folded) " +
+        "SELECT voyage_id, id, passager_id, 'BOOKED', number_of_seats, number_of_seats, reservation_date, FALSE " +
+        "FROM reservations WHERE status IN ('PENDING', 'CONFIRMED') ORDER BY id";
+
+    @Autowired
+    private ReservationEventRepository reservationEventRepository;
+
+    @Autowired
+    private TripSeatSnapshotRepository tripSeatSnapshotRepository;
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private SeatLedger seatLedger;
+
+    @Autowired
+    private TripTimeIndex tripTimeIndex;
+
+    @Autowired
+    private TripSearchCache tripSearchCache;
+
+    @Autowired
+    private TripReadModelProjector tripReadModelProjector;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 0 or less disables periodic snapshots
+    @Value("${app.reservationSnapshotMillis:60000}")
+    private long snapshotMillis;
+
+    // Guards the snapshots while folding. Not a monitor, since it is held across
+    // queries and would pin the carrier of a virtual thread waiting on them.
+    private final ReentrantLock foldLock = new ReentrantLock();
+
+    private ScheduledExecutorService snapshotter;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (reservationEventRepository.count() == 0) {
+            int seeded = jdbcTemplate.update(BACKFILL_EVENTS);
+            logger.info("Reservation event log seeded with {} existing bookings", seeded);
+        }
+        int legacy = jdbcTemplate.update(MARK_LEGACY_EVENTS, tripSeatSnapshotRepository.findMaxLastEventId());
+        if (legacy > 0) {
+            logger.info("Marked {} reservation events logged before the folded column", legacy);
+        }
+        if (snapshotMillis <= 0) {
+            return;
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshot, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Append an event for the reservation. Inside a transaction it is written
+     * with the transaction's other events just before commit, and dropped on
+     * rollback.
+     */
+    public void record(Reservation reservation, ReservationEvent.EventType type) {
+        ReservationEvent event = new ReservationEvent();
+        event.setVoyageId(reservation.getVoyageId());
+        event.setReservationId(reservation.getId());
+        event.setPassagerId(reservation.getPassagerId());
+        event.setType(type);
+        event.setSeats(reservation.getNumberOfSeats());
+        event.setSeatDelta(type.seatDelta(reservation.getNumberOfSeats()));
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(List.of(event));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<ReservationEvent> pending = (List<ReservationEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<ReservationEvent> batch = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, batch);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    write(batch);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ReservationEventLog.this);
+                }
+            });
+            pending = batch;
+        }
+        pending.add(event);
+    }
+
+    /**
+     * Seats held on the trip according to the log: its snapshot plus the events not folded into it.
+     */
+    public int reservedSeats(Long tripId) {
+        return reservationEventRepository.sumReservedSeats(tripId).intValue();
+    }
+
+    public List<ReservationEvent> getEvents(Long reservationId) {
+        return reservationEventRepository.findByReservationIdOrderByIdAsc(reservationId);
+    }
+
+    /**
+     * Fold the events committed since the last run into the snapshots, one
+     * batch per transaction.
+     */
+    public void snapshot() {
+        foldLock.lock();
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            Integer folded;
+            do {
+                folded = transaction.execute(status -> fold());
+            } while (folded != null && folded == FOLD_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            // The failing batch rolled back; the next run picks its events up
+            logger.warn("Reservation snapshot failed: {}", e.getMessage());
+        } finally {
+            foldLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild every snapshot by replaying the whole log, then recount
+     * available_seats of the PLANNED trips that disagree with it.
+     *
+     * With the seat ledger on, a trip it holds a counter for is checked against
+     * the counter rather than the column, which lags the ledger's write-behind
+     * flush. Such a trip is reported but not repaired: the counter also holds
+     * bookings that have not committed yet, and reloading it would put their
+     * seats back on sale.
+     */
+    public Map<String, Object> rebuild() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        List<Long> repaired = new ArrayList<>();
+        List<Long> ledgerDrifted = new ArrayList<>();
+        foldLock.lock();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                tripSeatSnapshotRepository.deleteAllInBatch();
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                List<Object[]> snapshots = new ArrayList<>();
+                for (Object[] row : reservationEventRepository.sumSeatDeltaGroupedByVoyage(true)) {
+                    snapshots.add(new Object[] {((Number) row[1]).intValue(), row[2], now, row[0]});
+                }
+                jdbcTemplate.batchUpdate(INSERT_SNAPSHOT, snapshots);
+                int folded;
+                do {
+                    folded = fold();
+                } while (folded == FOLD_BATCH_SIZE);
+
+                Map<Long, Integer> reservedByTrip = new HashMap<>();
+                for (TripSeatSnapshot snapshot : tripSeatSnapshotRepository.findAll()) {
+                    reservedByTrip.put(snapshot.getVoyageId(), snapshot.getReservedSeats());
+                }
+                List<Long> drifted = new ArrayList<>();
+                for (Voyage trip : voyageRepository.findByStatus(Voyage.VoyageStatus.PLANNED)) {
+                    int available = Math.max(0, trip.getMaxSeats() - reservedByTrip.getOrDefault(trip.getId(), 0));
+                    if (seatLedger.isTracking(trip.getId())) {
+                        if (seatLedger.availableSeats(trip) != available) {
+                            ledgerDrifted.add(trip.getId());
+                        }
+                    } else if (trip.getAvailableSeats() == null || trip.getAvailableSeats() != available) {
+                        drifted.add(trip.getId());
+                    }
+                }
+                // The trips are not written back: a booking or cancellation committed since they
+                // were read would be overwritten. Each one is recounted by a single conditional UPDATE.
+                for (Long tripId : drifted) {
+                    if (voyageRepository.recountSeats(tripId) > 0) {
+                        tripReadModelProjector.syncSeats(tripId);
+                        repaired.add(tripId);
+                    }
+                }
+
+                result.put("lastEventId", tripSeatSnapshotRepository.findMaxLastEventId());
+                result.put("snapshots", reservedByTrip.size());
+            });
+        } finally {
+            foldLock.unlock();
+        }
+
+        if (!ledgerDrifted.isEmpty()) {
+            logger.warn("Seat ledger counters disagree with the reservation log for trips {}", ledgerDrifted);
+        }
+        for (Voyage trip : voyageRepository.findAllById(repaired)) {
+            tripTimeIndex.update(trip);
+        }
+        if (!repaired.isEmpty()) {
+            tripSearchCache.clear();
+        }
+        result.put("repairedTrips", repaired);
+        result.put("ledgerDriftedTrips", ledgerDrifted);
+        logger.info("Reservation snapshots rebuilt up to event {}, {} trips repaired", result.get("lastEventId"), repaired.size());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+    }
+
+    private void write(List<ReservationEvent> events) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (ReservationEvent event : events) {
+            rows.add(new Object[] {event.getVoyageId(), event.getReservationId(), event.getPassagerId(),
+                event.getType().name(), event.getSeats(), event.getSeatDelta(), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+    }
+
+    /**
+     * Add the next batch of committed, unfolded events to the snapshots and
+     * mark them folded, in the caller's transaction. Only the events read here
+     * are marked, so one committing meanwhile waits for the next batch. Returns
+     * the number of events folded.
+     */
+    private int fold() {
+        List<long[]> events = jdbcTemplate.query(SELECT_UNFOLDED,
+            (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2), rs.getLong(3)}, FOLD_BATCH_SIZE);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> ids = new ArrayList<>(events.size());
+        Map<Long, long[]> byTrip = new LinkedHashMap<>();
+        for (long[] event : events) {
+            ids.add(new Object[] {event[0]});
+            long[] sum = byTrip.computeIfAbsent(event[1], tripId -> new long[2]);
+            sum[0] += event[2];
+            sum[1] = Math.max(sum[1], event[0]);
+        }
+        for (int marked : jdbcTemplate.batchUpdate(MARK_FOLDED, ids)) {
+            if (marked == 0) {
+                // Another instance folded it first; rolling back keeps it from being counted twice
+                throw new RuntimeException("Reservation events folded concurrently");
+            }
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(byTrip.size());
+        for (Map.Entry<Long, long[]> trip : byTrip.entrySet()) {
+            rows.add(new Object[] {(int) trip.getValue()[0], trip.getValue()[1], now, trip.getKey()});
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SNAPSHOT, rows);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(rows.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SNAPSHOT, missing);
+        }
+        return events.size();
+    }
+}
@@ -0,0 +1,157 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import esprit.pfe.covoiturage_final.repositories.ReservationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires PENDING reservations that the driver did not confirm in time.
+ *
+ * Every new PENDING reservation registers a hold in a {@link DelayQueue}. A
+ * single worker thread sleeps until the earliest hold is due, then takes it
+ * together with every other hold that is already due and expires them in one
+ * batch. Holds of reservations that were confirmed or cancelled in the
+ * meantime are dropped by the batch, which only touches reservations still
+ * PENDING. Outstanding holds are re-armed from the database at startup.
+ *
+ * Expiry is off unless app.seatHoldTtlMinutes is set. A hold re-armed at
+ * startup never ends sooner than app.seatHoldStartupGraceMinutes after it:
+ * when expiry is first turned on, bookings made long before it get a hold
+ * counted from the deploy instead of being cancelled all at once, and
+ * bookings whose hold ran out while the application was down get the same
+ * grace.
+ */
+@Component
+public class SeatHoldExpiry {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeatHoldExpiry.class);
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    @Autowired
+    @Lazy
+    private TripService tripService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    // 0 or less disables expiry
+    @Value("${app.seatHoldTtlMinutes:0}")
+    private long ttlMinutes;
+
+    @Value("${app.seatHoldStartupGraceMinutes:15}")
+    private long startupGraceMinutes;
+
+    private final DelayQueue<Hold> holds = new DelayQueue<>();
+
+    private Thread worker;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        long graceEndsAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(Math.max(0, startupGraceMinutes));
+        for (Reservation reservation : reservationRepository.findByStatus(Reservation.ReservationStatus.PENDING)) {
+            holds.add(new Hold(reservation.getId(), Math.max(expiresAt(reservation.getReservationDate()), graceEndsAt)));
+        }
+        worker = new Thread(this::run, "seat-hold-expiry");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("Seat hold expiry started with {} pending holds", holds.size());
+    }
+
+    public boolean isEnabled() {
+        return ttlMinutes > 0;
+    }
+
+    /**
+     * Register the hold of a PENDING reservation made at the given time.
+     */
+    public void hold(Long reservationId, LocalDateTime reservedAt) {
+        if (!isEnabled()) {
+            return;
+        }
+        holds.add(new Hold(reservationId, expiresAt(reservedAt)));
+    }
+
+    public int pendingHolds() {
+        return holds.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private long expiresAt(LocalDateTime reservedAt) {
+        LocalDateTime start = reservedAt != null ? reservedAt : LocalDateTime.now();
+        return start.plusMinutes(ttlMinutes).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Hold> due = new ArrayList<>();
+            try {
+                due.add(holds.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            holds.drainTo(due, MAX_BATCH_SIZE - 1);
+
+            List<Long> reservationIds = new ArrayList<>(due.size());
+            for (Hold hold : due) {
+                reservationIds.add(hold.reservationId);
+            }
+            try {
+                tripService.expirePendingBookings(reservationIds);
+            } catch (RuntimeException e) {
+                // Put the batch back and retry it after a short pause
+                long retryAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+                for (Long reservationId : reservationIds) {
+                    holds.add(new Hold(reservationId, retryAt));
+                }
+                logger.warn("Expiring {} seat holds failed: {}", reservationIds.size(), e.getMessage());
+            }
+        }
+    }
+
+    private static final class Hold implements Delayed {
+        private final Long reservationId;
+        private final long expiresAt;
+
+        private Hold(Long reservationId, long expiresAt) {
+            this.reservationId = reservationId;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Hold) other).expiresAt);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.ReservationRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional in-memory seat counters for the booking path.
+ *
+ * When enabled, seat checks and decrements happen on a per-trip lock-free
+ * counter instead of a conditional UPDATE on the voyages row, so bookings on a
+ * hot trip no longer queue on its row lock. Reservations stay the source of
+ * truth: a counter is loaded as maxSeats minus the seats held by PENDING and
+ * CONFIRMED reservations, and changed counters are written back to
+ * voyages.available_seats and the trip read model in batches by a background
+ * flusher. A live counter is never reloaded: bookings that took seats from it
+ * but have not committed yet are invisible to the reservations, so a reload
+ * would put their seats back on sale. Capacity changes are applied to the
+ * counter with {@link #resize}, and a counter is only dropped once its trip
+ * can no longer be booked. After a crash
+ * the counters are rebuilt from the reservations at startup and the column is
+ * repaired by the next flush.
+ *
+ * The counters live in this JVM only, so the ledger must only be enabled when
+ * a single instance of the application takes bookings: a second instance would
+ * sell the same seats from counters of its own.
+ */
+@Component
+public class SeatLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeatLedger.class);
+
+    private static final int LOAD_STRIPES = 64;
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.seatLedgerEnabled:false}")
+    private boolean enabled;
+
+    @Value("${app.seatLedgerFlushMillis:200}")
+    private long flushMillis;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    // Trips whose counter changed since the last flush
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    // Serializes loading a trip's counter without a global lock. ReentrantLock rather
+    // than a monitor, since the load queries the database and a virtual thread blocked
+    // inside synchronized would pin its carrier thread.
+    private final ReentrantLock[] loadStripes = new ReentrantLock[LOAD_STRIPES];
+
+    private ScheduledExecutorService flusher;
+
+    public SeatLedger() {
+        for (int i = 0; i < LOAD_STRIPES; i++) {
+            loadStripes[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-ledger-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rebuild every PLANNED trip's counter from its reservations and schedule
+     * the voyages table to be brought in line.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+        counters.clear();
+        dirty.clear();
+
+        Map<Long, Integer> reservedByTrip = new HashMap<>();
+        for (Object[] row : reservationRepository.sumActiveSeatsGroupedByVoyage()) {
+            reservedByTrip.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        for (Voyage trip : voyageRepository.findByStatus(Voyage.VoyageStatus.PLANNED)) {
+            int available = Math.max(0, trip.getMaxSeats() - reservedByTrip.getOrDefault(trip.getId(), 0));
+            counters.put(trip.getId(), new Counter(available, trip.getMaxSeats()));
+            if (trip.getAvailableSeats() == null || trip.getAvailableSeats() != available) {
+                dirty.add(trip.getId());
+            }
+        }
+        logger.info("Seat ledger recovered {} trips, {} to repair", counters.size(), dirty.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take seats if enough are left. Returns false without changing anything otherwise.
+     */
+    public boolean tryReserve(Voyage trip, int seats) {
+        AtomicInteger counter = counter(trip.getId()).available;
+        while (true) {
+            int current = counter.get();
+            if (current < seats) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current - seats)) {
+                dirty.add(trip.getId());
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give seats back to the trip's counter. Does nothing when the counter is
+     * not loaded: loading it counts the seats of the released booking as free
+     * already, so adding them again would sell them twice.
+     */
+    public void release(Voyage trip, int seats) {
+        Counter counter = counters.computeIfPresent(trip.getId(), (tripId, current) -> {
+            current.available.accumulateAndGet(seats, (value, added) -> Math.min(current.capacity, value + added));
+            return current;
+        });
+        if (counter != null) {
+            dirty.add(trip.getId());
+        }
+    }
+
+    /**
+     * Move the trip's capacity from {@code oldMaxSeats} to {@code newMaxSeats},
+     * adding the difference to its free seats. Returns false without changing
+     * anything when more seats are taken than the new capacity allows,
+     * including seats of bookings that have not committed yet.
+     */
+    public boolean resize(Long tripId, int oldMaxSeats, int newMaxSeats) {
+        Counter counter = counter(tripId);
+        int delta = newMaxSeats - oldMaxSeats;
+        while (true) {
+            int current = counter.available.get();
+            if (current + delta < 0) {
+                return false;
+            }
+            if (counter.available.compareAndSet(current, current + delta)) {
+                counter.capacity = newMaxSeats;
+                dirty.add(tripId);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Undo a {@link #resize} whose transaction rolled back. Applied even when
+     * seats sold from the added capacity leave the counter below zero: those
+     * stay sold, and nothing more is sold until enough are released.
+     */
+    public void undoResize(Long tripId, int oldMaxSeats, int newMaxSeats) {
+        Counter counter = counters.get(tripId);
+        if (counter != null) {
+            counter.available.addAndGet(oldMaxSeats - newMaxSeats);
+            counter.capacity = oldMaxSeats;
+            dirty.add(tripId);
+        }
+    }
+
+    /**
+     * Whether the ledger holds a counter for the trip, which then has the
+     * latest count rather than voyages.available_seats.
+     */
+    public boolean isTracking(Long tripId) {
+        return enabled && counters.containsKey(tripId);
+    }
+
+    /**
+     * Seats left on the trip: the ledger's count if it tracks the trip,
+     * otherwise the persisted value.
+     */
+    public int availableSeats(Voyage trip) {
+        Counter counter = enabled ? counters.get(trip.getId()) : null;
+        return counter != null ? counter.available.get() : trip.getAvailableSeats();
+    }
+
+    /**
+     * Forget a trip that left PLANNED or was deleted. Never call this for a
+     * trip that can still be booked.
+     */
+    public void evict(Long tripId) {
+        counters.remove(tripId);
+        dirty.remove(tripId);
+    }
+
+    /**
+     * Write the changed counters to voyages.available_seats and
+     * trip_read_model.available_seats, one JDBC batch each.
+     */
+    public void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        Iterator<Long> it = dirty.iterator();
+        while (it.hasNext()) {
+            Long tripId = it.next();
+            it.remove();
+            Counter counter = counters.get(tripId);
+            if (counter != null) {
+                batch.add(new Object[] {counter.available.get(), tripId});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate("UPDATE voyages SET available_seats = ? WHERE id = ?", batch);
+            jdbcTemplate.batchUpdate("UPDATE trip_read_model SET available_seats = ? WHERE voyage_id = ?", batch);
+        } catch (RuntimeException e) {
+            // Retry on the next run; the counters still hold the latest values
+            for (Object[] args : batch) {
+                dirty.add((Long) args[1]);
+            }
+            logger.warn("Seat ledger flush of {} trips failed: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flush();
+    }
+
+    private Counter counter(Long tripId) {
+        Counter counter = counters.get(tripId);
+        if (counter != null) {
+            return counter;
+        }
+        ReentrantLock stripe = loadStripes[(int) (tripId % LOAD_STRIPES)];
+        stripe.lock();
+        try {
+            counter = counters.get(tripId);
+            if (counter == null) {
+                // Read the capacity from the row rather than trusting the caller's copy of the trip
+                Integer maxSeats = voyageRepository.findMaxSeatsById(tripId);
+                if (maxSeats == null) {
+                    throw new RuntimeException("Trip not found");
+                }
+                int reserved = reservationRepository.sumActiveSeatsByVoyageId(tripId).intValue();
+                counter = new Counter(Math.max(0, maxSeats - reserved), maxSeats);
+                counters.put(tripId, counter);
+            }
+            return counter;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * A trip's free seats and the capacity releases are capped at.
+     */
+    private static final class Counter {
+        private final AtomicInteger available;
+        private volatile int capacity;
+
+        private Counter(int available, int capacity) {
+            this.available = new AtomicInteger(available);
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Ville;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory adjacency index over the voyage_villes table of PLANNED trips.
+ *
+ * Every city maps to the trips visiting it, sorted by trip id, together with
+ * the city's position along each trip's route. "Trips visiting A before B" is
+ * a merge-walk of the two sorted lists that keeps the ids present in both with
+ * pos(A) < pos(B), so no join against voyage_villes is needed at search time.
+ */
+@Component
+public class TripCityIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripCityIndex.class);
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private CityNameTrie cityNameTrie;
+
+    // city id -> (trip id -> position of the city along the trip's route)
+    private final Map<Long, ConcurrentSkipListMap<Long, Integer>> tripsByCity = new ConcurrentHashMap<>();
+
+    // trip id -> city ids in route order
+    private final Map<Long, List<Long>> citiesByTrip = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        tripsByCity.clear();
+        citiesByTrip.clear();
+
+        Map<Long, TreeMap<Integer, Long>> routes = new HashMap<>();
+        for (Object[] row : voyageRepository.findCityPositionsByStatus(Voyage.VoyageStatus.PLANNED)) {
+            Long tripId = (Long) row[0];
+            Long cityId = (Long) row[1];
+            Integer position = ((Number) row[2]).intValue();
+            routes.computeIfAbsent(tripId, id -> new TreeMap<>()).put(position, cityId);
+        }
+        routes.forEach((tripId, cities) -> index(tripId, new ArrayList<>(cities.values())));
+
+        logger.info("Trip city index built with {} trips over {} cities", citiesByTrip.size(), tripsByCity.size());
+    }
+
+    /**
+     * Index (or re-index) a trip from its cities in route order.
+     */
+    public void index(Long tripId, List<Long> cityIds) {
+        remove(tripId);
+        if (cityIds == null || cityIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> route = List.copyOf(cityIds);
+        citiesByTrip.put(tripId, route);
+        for (int position = 0; position < route.size(); position++) {
+            // A city listed twice keeps its first position
+            tripsByCity.computeIfAbsent(route.get(position), id -> new ConcurrentSkipListMap<>())
+                .putIfAbsent(tripId, position);
+        }
+    }
+
+    public void remove(Long tripId) {
+        List<Long> previous = citiesByTrip.remove(tripId);
+        if (previous == null) {
+            return;
+        }
+        for (Long cityId : previous) {
+            tripsByCity.computeIfPresent(cityId, (id, trips) -> {
+                trips.remove(tripId);
+                return trips.isEmpty() ? null : trips;
+            });
+        }
+    }
+
+    /**
+     * Id of the city with this name (ignoring case and accents), or null if unknown.
+     */
+    public Long cityId(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        Ville city = cityNameTrie.findExact(name);
+        return city != null ? city.getId() : null;
+    }
+
+    /**
+     * Trips visiting the departure city and later the arrival city.
+     */
+    public Set<Long> findTrips(Long fromCityId, Long toCityId) {
+        Set<Long> result = new HashSet<>();
+        ConcurrentNavigableMap<Long, Integer> from = tripsByCity.get(fromCityId);
+        ConcurrentNavigableMap<Long, Integer> to = tripsByCity.get(toCityId);
+        if (from == null || to == null) {
+            return result;
+        }
+
+        Iterator<Map.Entry<Long, Integer>> a = from.entrySet().iterator();
+        Iterator<Map.Entry<Long, Integer>> b = to.entrySet().iterator();
+        if (!a.hasNext() || !b.hasNext()) {
+            return result;
+        }
+        Map.Entry<Long, Integer> x = a.next();
+        Map.Entry<Long, Integer> y = b.next();
+        while (true) {
+            int cmp = x.getKey().compareTo(y.getKey());
+            if (cmp == 0 && x.getValue() < y.getValue()) {
+                result.add(x.getKey());
+            }
+            if (cmp <= 0) {
+                if (!a.hasNext()) {
+                    break;
+                }
+                x = a.next();
+            }
+            if (cmp >= 0) {
+                if (!b.hasNext()) {
+                    break;
+                }
+                y = b.next();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Trips visiting the city at any point of their route.
+     */
+    public Set<Long> findTrips(Long cityId) {
+        ConcurrentNavigableMap<Long, Integer> trips = tripsByCity.get(cityId);
+        return trips != null ? new HashSet<>(trips.keySet()) : new HashSet<>();
+    }
+
+    /**
+     * Same check as {@link #findTrips(Long, Long)} for a single trip. A null
+     * city id means that side is unconstrained.
+     */
+    public boolean matches(Long tripId, Long fromCityId, Long toCityId) {
+        List<Long> route = citiesByTrip.get(tripId);
+        if (route == null) {
+            return false;
+        }
+        int from = fromCityId != null ? route.indexOf(fromCityId) : -1;
+        int to = toCityId != null ? route.indexOf(toCityId) : -1;
+        if (fromCityId != null && from < 0 || toCityId != null && to < 0) {
+            return false;
+        }
+        return fromCityId == null || toCityId == null || from < to;
+    }
+
+    public int size() {
+        return citiesByTrip.size();
+    }
+}
@@ -0,0 +1,142 @@
+package esprit.pfe.covoiturage_final.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Relevance ranking stage for trip search.
+ *
+ * Every candidate gets a weighted score built from four components, each
+ * normalized to [0, 1]: closeness of the route to the pickup/drop-off points,
+ * closeness of the departure to the requested time, price and driver rating.
+ * Only the best K candidates are kept, in a bounded min-heap, so ranking n
+ * candidates costs O(n log K) instead of a full sort.
+ */
+@Component
+public class TripRanker {
+
+    private static final Comparator<Scored> WORST_FIRST = Comparator
+        .comparingDouble(Scored::score)
+        .thenComparing(scored -> scored.candidate().getDepartureTime(), Comparator.reverseOrder())
+        .thenComparing(scored -> scored.candidate().getTripId(), Comparator.reverseOrder());
+
+    @Value("${app.rankingDistanceWeight:0.4}")
+    private double distanceWeight = 0.4;
+
+    @Value("${app.rankingTimeWeight:0.3}")
+    private double timeWeight = 0.3;
+
+    @Value("${app.rankingPriceWeight:0.2}")
+    private double priceWeight = 0.2;
+
+    @Value("${app.rankingRatingWeight:0.1}")
+    private double ratingWeight = 0.1;
+
+    // Price at which the price component drops to 0.5
+    @Value("${app.rankingReferencePrice:30.0}")
+    private double referencePrice = 30.0;
+
+    /**
+     * Ids of the k best candidates, best first.
+     *
+     * @param driverRatings driver id -> rating (0 to 5); missing drivers count as unrated
+     * @param radiusKm search radius used to normalize the distance component
+     */
+    public List<Long> topK(Collection<Candidate> candidates, Map<Long, Double> driverRatings,
+                           LocalDateTime requestedDeparture, double radiusKm, int k) {
+        PriorityQueue<Scored> heap = new PriorityQueue<>(k + 1, WORST_FIRST);
+        for (Candidate candidate : candidates) {
+            Scored scored = new Scored(candidate, score(candidate, driverRatings, requestedDeparture, radiusKm));
+            if (heap.size() < k) {
+                heap.add(scored);
+            } else if (WORST_FIRST.compare(scored, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(scored);
+            }
+        }
+
+        List<Scored> best = new ArrayList<>(heap);
+        best.sort(WORST_FIRST.reversed());
+        List<Long> ids = new ArrayList<>(best.size());
+        for (Scored scored : best) {
+            ids.add(scored.candidate().getTripId());
+        }
+        return ids;
+    }
+
+    double score(Candidate candidate, Map<Long, Double> driverRatings, LocalDateTime requestedDeparture, double radiusKm) {
+        double distance = 1.0;
+        if (radiusKm > 0 && candidate.getPickupKm() != null && candidate.getDropoffKm() != null) {
+            double average = (candidate.getPickupKm() + candidate.getDropoffKm()) / 2;
+            distance = 1.0 - Math.min(1.0, average / radiusKm);
+        }
+
+        double minutesAway = Math.abs(Duration.between(requestedDeparture, candidate.getDepartureTime()).toMinutes());
+        double time = 1.0 / (1.0 + minutesAway / 60.0);
+
+        double price = 1.0 / (1.0 + candidate.getPricePerSeat() / referencePrice);
+
+        Double rating = driverRatings.get(candidate.getDriverId());
+        double driver = rating != null ? Math.min(1.0, rating / 5.0) : 0.0;
+
+        return distanceWeight * distance + timeWeight * time + priceWeight * price + ratingWeight * driver;
+    }
+
+    /**
+     * Search-relevant view of a trip that passed the filters.
+     */
+    public static final class Candidate {
+        private final Long tripId;
+        private final Long driverId;
+        private final LocalDateTime departureTime;
+        private final double pricePerSeat;
+        private final Double pickupKm;
+        private final Double dropoffKm;
+
+        public Candidate(Long tripId, Long driverId, LocalDateTime departureTime, double pricePerSeat,
+                         Double pickupKm, Double dropoffKm) {
+            this.tripId = tripId;
+            this.driverId = driverId;
+            this.departureTime = departureTime;
+            this.pricePerSeat = pricePerSeat;
+            this.pickupKm = pickupKm;
+            this.dropoffKm = dropoffKm;
+        }
+
+        public Long getTripId() {
+            return tripId;
+        }
+
+        public Long getDriverId() {
+            return driverId;
+        }
+
+        public LocalDateTime getDepartureTime() {
+            return departureTime;
+        }
+
+        public double getPricePerSeat() {
+            return pricePerSeat;
+        }
+
+        public Double getPickupKm() {
+            return pickupKm;
+        }
+
+        public Double getDropoffKm() {
+            return dropoffKm;
+        }
+    }
+
+    private record Scored(Candidate candidate, double score) {
+    }
+}
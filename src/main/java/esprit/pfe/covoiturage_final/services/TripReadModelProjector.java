@@ -0,0 +1,277 @@
+package esprit.pfe.covoiturage_final.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import esprit.pfe.covoiturage_final.dto.TripResponse;
+import esprit.pfe.covoiturage_final.dto.TripSummary;
+import esprit.pfe.covoiturage_final.entities.Point_GPS;
+import esprit.pfe.covoiturage_final.entities.TripReadModel;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.TripReadModelRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains trip_read_model, the denormalized copy of every trip that the
+ * query endpoints read, and turns its rows back into TripResponses.
+ *
+ * Rows are written in the same transaction as the change to the trip: in full
+ * when the trip is created or edited, and with a single UPDATE of its status
+ * and seats on every booking or status change. With the seat ledger on, seats
+ * reach the row through the ledger's flush instead. A driver's summary is
+ * rewritten on all of their rows once a change to the driver commits. The
+ * table is rebuilt from the source tables at startup when it is missing rows,
+ * and {@link #rebuild()} repairs it on demand.
+ */
+@Component
+public class TripReadModelProjector {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripReadModelProjector.class);
+
+    private static final int REBUILD_BATCH_SIZE = 200;
+
+    @Autowired
+    private TripReadModelRepository tripReadModelRepository;
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private TripResponseAssembler tripResponseAssembler;
+
+    @Autowired
+    private DriverSummaryCache driverSummaryCache;
+
+    @Autowired
+    private SeatLedger seatLedger;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long rows = tripReadModelRepository.count();
+        long trips = voyageRepository.count();
+        if (rows != trips) {
+            logger.info("Trip read model has {} rows for {} trips, rebuilding", rows, trips);
+            rebuild();
+        }
+    }
+
+    /**
+     * Rewrite the trip's whole row from the source tables. Returns the trip as
+     * the row now describes it.
+     */
+    public TripResponse refresh(Voyage trip) {
+        TripResponse response = tripResponseAssembler.toResponse(trip);
+        tripReadModelRepository.save(toRow(response, trip.getConducteurId()));
+        return response;
+    }
+
+    /**
+     * Bring the row's status and seat count in line with the trip.
+     */
+    public void update(Voyage trip) {
+        if (seatLedger.isEnabled()) {
+            tripReadModelRepository.updateStatus(trip.getId(), trip.getStatus(), trip.getUpdatedAt());
+        } else {
+            tripReadModelRepository.updateState(trip.getId(), trip.getStatus(), trip.getAvailableSeats(),
+                trip.getUpdatedAt());
+        }
+    }
+
+    public void updateSeats(Long tripId, int seats) {
+        tripReadModelRepository.updateSeats(tripId, seats);
+    }
+
+    public void syncSeats(Long tripId) {
+        tripReadModelRepository.syncSeats(tripId);
+    }
+
+    public void remove(Long tripId) {
+        tripReadModelRepository.deleteById(tripId);
+    }
+
+    /**
+     * Rewrite the driver's summary on all of their trips, in a transaction of
+     * its own so it can run once the change to the driver has committed.
+     */
+    public void refreshDriver(Long driverId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> {
+            DriverSummaryCache.DriverSummary driver = driverSummaryCache.get(driverId);
+            if (driver != null) {
+                tripReadModelRepository.updateDriverDocument(driverId, write(tripResponseAssembler.toDriverInfo(driver)));
+            }
+        });
+    }
+
+    public TripResponse toResponse(TripReadModel row) {
+        TripResponse response = new TripResponse();
+        response.setId(row.getId());
+        response.setDepartureTime(row.getDepartureTime());
+        response.setArrivalTime(row.getArrivalTime());
+        response.setPricePerSeat(row.getPricePerSeat());
+        response.setAvailableSeats(row.getAvailableSeats());
+        response.setMaxSeats(row.getMaxSeats());
+        response.setDescription(row.getDescription());
+        response.setStatus(row.getStatus());
+        response.setCreatedAt(row.getCreatedAt());
+        response.setUpdatedAt(row.getUpdatedAt());
+        if (row.getDriverDocument() != null) {
+            response.setDriver(read(row.getDriverDocument(), TripResponse.DriverInfo.class));
+        }
+        Document document = read(row.getDocument(), Document.class);
+        response.setPoints(document.points());
+        response.setOptions(document.options());
+        response.setCities(document.cities());
+        return response;
+    }
+
+    public List<TripResponse> toResponses(List<TripReadModel> rows) {
+        List<TripResponse> responses = new ArrayList<>(rows.size());
+        for (TripReadModel row : rows) {
+            responses.add(toResponse(row));
+        }
+        return responses;
+    }
+
+    /**
+     * Regenerate every row from the source tables, a batch of trips per
+     * transaction, then drop the rows of trips that no longer exist.
+     */
+    public Map<String, Object> rebuild() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        rebuildLock.lock();
+        try {
+            long afterId = 0L;
+            int written = 0;
+            while (true) {
+                long from = afterId;
+                List<TripSummary> batch = transaction.execute(status -> writeBatch(from));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                written += batch.size();
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+            Integer removed = transaction.execute(status -> tripReadModelRepository.deleteOrphans());
+
+            result.put("trips", written);
+            result.put("removed", removed);
+        } finally {
+            rebuildLock.unlock();
+        }
+        logger.info("Trip read model rebuilt: {} trips written, {} stale rows removed", result.get("trips"), result.get("removed"));
+        return result;
+    }
+
+    /**
+     * Write the rows of the next batch of trips after {@code afterId}. Their
+     * voyages rows stay share-locked until the batch commits, so a booking or
+     * edit of one of them either commits before the batch reads it or waits
+     * and applies its update after the batch, never under it. Returns the batch.
+     */
+    private List<TripSummary> writeBatch(long afterId) {
+        List<TripSummary> trips = voyageRepository.findBatchAfterForShare(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE))
+            .stream()
+            .map(TripSummary::of)
+            .collect(Collectors.toList());
+        if (trips.isEmpty()) {
+            return trips;
+        }
+
+        // Load the existing rows first so saving them merges without a select per row
+        tripReadModelRepository.findAllById(trips.stream().map(TripSummary::getId).collect(Collectors.toList()));
+
+        List<TripResponse> responses = tripResponseAssembler.toSummaryResponses(trips);
+        List<TripReadModel> rows = new ArrayList<>(responses.size());
+        for (int i = 0; i < responses.size(); i++) {
+            rows.add(toRow(responses.get(i), trips.get(i).getDriverId()));
+        }
+        tripReadModelRepository.saveAll(rows);
+        return trips;
+    }
+
+    private TripReadModel toRow(TripResponse response, Long driverId) {
+        TripReadModel row = new TripReadModel();
+        row.setId(response.getId());
+        row.setDepartureTime(response.getDepartureTime());
+        row.setArrivalTime(response.getArrivalTime());
+        row.setPricePerSeat(response.getPricePerSeat());
+        row.setAvailableSeats(response.getAvailableSeats());
+        row.setMaxSeats(response.getMaxSeats());
+        row.setDescription(response.getDescription());
+        row.setStatus(response.getStatus());
+        row.setCreatedAt(response.getCreatedAt());
+        row.setUpdatedAt(response.getUpdatedAt());
+        row.setDriverId(driverId);
+
+        for (TripResponse.GPSPointInfo point : response.getPoints()) {
+            if (Point_GPS.PointType.START.name().equals(point.getPointType())) {
+                row.setStartLatitude(point.getLatitude());
+                row.setStartLongitude(point.getLongitude());
+            } else if (Point_GPS.PointType.END.name().equals(point.getPointType())) {
+                row.setEndLatitude(point.getLatitude());
+                row.setEndLongitude(point.getLongitude());
+            }
+        }
+        List<TripResponse.CityInfo> cities = response.getCities();
+        if (!cities.isEmpty()) {
+            row.setStartCity(cities.get(0).getName());
+            row.setEndCity(cities.get(cities.size() - 1).getName());
+        }
+        row.setOptionIds(response.getOptions().stream()
+            .map(option -> String.valueOf(option.getId()))
+            .collect(Collectors.joining(",")));
+
+        row.setDocument(write(new Document(response.getPoints(), response.getOptions(), cities)));
+        if (response.getDriver() != null) {
+            row.setDriverDocument(write(response.getDriver()));
+        }
+        return row;
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not write trip read model", e);
+        }
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not read trip read model", e);
+        }
+    }
+
+    record Document(List<TripResponse.GPSPointInfo> points, List<TripResponse.OptionInfo> options,
+                    List<TripResponse.CityInfo> cities) {
+    }
+}
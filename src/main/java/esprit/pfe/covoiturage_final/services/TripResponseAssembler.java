@@ -0,0 +1,157 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.dto.TripResponse;
+import esprit.pfe.covoiturage_final.dto.TripSummary;
+import esprit.pfe.covoiturage_final.entities.Option;
+import esprit.pfe.covoiturage_final.entities.Point_GPS;
+import esprit.pfe.covoiturage_final.entities.Ville;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.Point_GPSRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds TripResponses for a whole list of trips at once.
+ *
+ * Drivers, GPS points, options and cities are each loaded for every trip in
+ * the list with a single IN query and stitched back per trip through hash
+ * maps, so a page costs four queries however many trips it holds, three once
+ * its drivers are in the {@link DriverSummaryCache}. The trips'
+ * own lazy collections are never touched.
+ */
+@Component
+public class TripResponseAssembler {
+
+    @Autowired
+    private DriverSummaryCache driverSummaryCache;
+
+    @Autowired
+    private Point_GPSRepository pointGpsRepository;
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    public TripResponse toResponse(Voyage trip) {
+        return toResponses(List.of(trip)).get(0);
+    }
+
+    /**
+     * One response per trip, in the order given.
+     */
+    public List<TripResponse> toResponses(List<Voyage> trips) {
+        List<TripSummary> summaries = new ArrayList<>(trips.size());
+        for (Voyage trip : trips) {
+            summaries.add(TripSummary.of(trip));
+        }
+        return toSummaryResponses(summaries);
+    }
+
+    /**
+     * One response per projected trip, in the order given.
+     */
+    public List<TripResponse> toSummaryResponses(List<TripSummary> trips) {
+        if (trips.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> tripIds = new LinkedHashSet<>();
+        Set<Long> driverIds = new LinkedHashSet<>();
+        for (TripSummary trip : trips) {
+            tripIds.add(trip.getId());
+            driverIds.add(trip.getDriverId());
+        }
+
+        Map<Long, TripResponse.DriverInfo> drivers = new HashMap<>();
+        for (DriverSummaryCache.DriverSummary driver : driverSummaryCache.getAll(driverIds).values()) {
+            drivers.put(driver.id(), toDriverInfo(driver));
+        }
+
+        Map<Long, List<TripResponse.GPSPointInfo>> points = new HashMap<>();
+        for (Point_GPS point : pointGpsRepository.findByVoyageIdInOrderByVoyageIdAscSequenceNumberAsc(tripIds)) {
+            points.computeIfAbsent(point.getVoyageId(), id -> new ArrayList<>()).add(toPointInfo(point));
+        }
+
+        Map<Long, List<TripResponse.OptionInfo>> options = new HashMap<>();
+        for (Object[] row : voyageRepository.findOptionsByVoyageIds(tripIds)) {
+            options.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(toOptionInfo((Option) row[1]));
+        }
+
+        Map<Long, List<TripResponse.CityInfo>> cities = new HashMap<>();
+        for (Object[] row : voyageRepository.findCitiesByVoyageIds(tripIds)) {
+            cities.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(toCityInfo((Ville) row[1]));
+        }
+
+        List<TripResponse> responses = new ArrayList<>(trips.size());
+        for (TripSummary trip : trips) {
+            TripResponse response = new TripResponse();
+            response.setId(trip.getId());
+            response.setDepartureTime(trip.getDepartureTime());
+            response.setArrivalTime(trip.getArrivalTime());
+            response.setPricePerSeat(trip.getPricePerSeat());
+            response.setAvailableSeats(trip.getAvailableSeats());
+            response.setMaxSeats(trip.getMaxSeats());
+            response.setDescription(trip.getDescription());
+            response.setStatus(trip.getStatus());
+            response.setCreatedAt(trip.getCreatedAt());
+            response.setUpdatedAt(trip.getUpdatedAt());
+            response.setDriver(drivers.get(trip.getDriverId()));
+            response.setPoints(points.getOrDefault(trip.getId(), new ArrayList<>()));
+            response.setOptions(options.getOrDefault(trip.getId(), new ArrayList<>()));
+            response.setCities(cities.getOrDefault(trip.getId(), new ArrayList<>()));
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    public TripResponse.DriverInfo toDriverInfo(DriverSummaryCache.DriverSummary driver) {
+        TripResponse.DriverInfo driverInfo = new TripResponse.DriverInfo();
+        driverInfo.setId(driver.id());
+        driverInfo.setUsername(driver.username());
+        driverInfo.setFirstName(driver.firstName());
+        driverInfo.setLastName(driver.lastName());
+        driverInfo.setPhoneNumber(driver.phoneNumber());
+        driverInfo.setVehicleModel(driver.vehicleModel());
+        driverInfo.setVehicleColor(driver.vehicleColor());
+        driverInfo.setVehiclePlate(driver.vehiclePlate());
+        driverInfo.setRating(driver.rating());
+        driverInfo.setTotalTrips(driver.totalTrips());
+        driverInfo.setIsVerified(driver.isVerified());
+        return driverInfo;
+    }
+
+    private TripResponse.GPSPointInfo toPointInfo(Point_GPS point) {
+        TripResponse.GPSPointInfo info = new TripResponse.GPSPointInfo();
+        info.setId(point.getId());
+        info.setLatitude(point.getLatitude());
+        info.setLongitude(point.getLongitude());
+        info.setAddress(point.getAddress());
+        info.setPointType(point.getPointType().name());
+        return info;
+    }
+
+    private TripResponse.OptionInfo toOptionInfo(Option option) {
+        TripResponse.OptionInfo info = new TripResponse.OptionInfo();
+        info.setId(option.getId());
+        info.setName(option.getName());
+        info.setDescription(option.getDescription());
+        info.setPrice(option.getPrice());
+        return info;
+    }
+
+    private TripResponse.CityInfo toCityInfo(Ville ville) {
+        TripResponse.CityInfo info = new TripResponse.CityInfo();
+        info.setId(ville.getId());
+        info.setName(ville.getName());
+        info.setCodePostal(ville.getCodePostal());
+        info.setPays(ville.getPays());
+        return info;
+    }
+}
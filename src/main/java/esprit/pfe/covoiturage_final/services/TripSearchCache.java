@@ -0,0 +1,346 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.dto.SearchTripRequest;
+import esprit.pfe.covoiturage_final.dto.TripPage;
+import esprit.pfe.covoiturage_final.dto.TripResponse;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded LRU + TTL cache of search result pages, keyed by a canonicalized
+ * {@link SearchTripRequest}.
+ *
+ * Entries are invalidated selectively: when a trip changes, only the entries
+ * that either returned that trip or whose criteria the trip now satisfies are
+ * dropped. A booking can only take seats, so it only drops the entries holding
+ * its trip, found through a reverse index, without scanning the cache.
+ *
+ * The key buckets the departure window, so a cached page may hold trips just
+ * outside the caller's exact window; callers clip it to their own request.
+ *
+ * A page is not cached if one of its trips changed since its search started,
+ * or if a trip that changed since then now matches its criteria, so a search
+ * that read a trip before a change committed cannot cache it after the change
+ * invalidated the entries.
+ */
+@Component
+public class TripSearchCache {
+
+    // Departure windows are widened to 15 minute buckets so near-identical queries share an entry
+    private static final int DATE_BUCKET_MINUTES = 15;
+
+    // 3 decimals is roughly 110 m
+    private static final double COORDINATE_SCALE = 1000.0;
+
+    // Changes that may make a trip match new searches, kept for the searches still running
+    private static final int MAX_RECENT_CHANGES = 1000;
+
+    @Autowired
+    private TripSpatialIndex tripSpatialIndex;
+
+    @Autowired
+    private TripCityIndex tripCityIndex;
+
+    @Value("${app.searchCacheMaxSize:1000}")
+    private int maxSize;
+
+    @Value("${app.searchCacheTtlSeconds:60}")
+    private long ttlSeconds;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Bumped on every invalidation; a search reads it when it starts
+    private long generation;
+
+    // Generation of the latest invalidation of each trip
+    private final Map<Long, Long> tripGenerations = new HashMap<>();
+
+    // Changed trips that may now match searches they did not match before, oldest first
+    private final ArrayDeque<Change> recentChanges = new ArrayDeque<>();
+
+    // Searches started before this generation cannot be checked against recentChanges any more
+    private long forgottenBefore;
+
+    // Keys of the cached pages that hold each trip
+    private final Map<Long, Set<SearchTripRequest>> keysByTrip = new HashMap<>();
+
+    private final LinkedHashMap<SearchTripRequest, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SearchTripRequest, Entry> eldest) {
+            if (size() > maxSize) {
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Build the cache key for a request. The returned request is also the one
+     * the search should run with, so the cached page matches its key exactly;
+     * the caller then clips the page to its own departure window.
+     */
+    public SearchTripRequest canonicalize(SearchTripRequest request) {
+        SearchTripRequest key = new SearchTripRequest();
+        key.setDepartureTime(floorToBucket(request.getDepartureTime()));
+        key.setMaxDepartureTime(ceilToBucket(request.getMaxDepartureTime()));
+        key.setStartLatitude(round(request.getStartLatitude()));
+        key.setStartLongitude(round(request.getStartLongitude()));
+        key.setEndLatitude(round(request.getEndLatitude()));
+        key.setEndLongitude(round(request.getEndLongitude()));
+        key.setMinPrice(request.getMinPrice());
+        key.setMaxPrice(request.getMaxPrice());
+        key.setNumberOfSeats(request.getNumberOfSeats() != null ? request.getNumberOfSeats() : 1);
+        key.setSearchRadiusKm(request.getSearchRadiusKm() != null ? request.getSearchRadiusKm() : 10.0);
+        key.setStartCity(normalizeCity(request.getStartCity()));
+        key.setEndCity(normalizeCity(request.getEndCity()));
+        key.setCursor(request.getCursor());
+        key.setPageSize(request.getPageSize());
+        key.setSortBy(request.getSortBy() != null ? request.getSortBy() : SearchTripRequest.SortOrder.DEPARTURE);
+        return key;
+    }
+
+    public synchronized TripPage get(SearchTripRequest key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            unindex(key, entry);
+            evictions.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.page;
+    }
+
+    /**
+     * Current generation, to be read before running the search whose page is
+     * then passed to {@link #put}.
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Cache the page of a search that started at {@code searchGeneration},
+     * unless a trip changed since then in a way the page may not reflect.
+     */
+    public synchronized void put(SearchTripRequest key, TripPage page, long searchGeneration) {
+        if (searchGeneration < forgottenBefore) {
+            return;
+        }
+        Set<Long> tripIds = page.getTrips().stream()
+            .map(TripResponse::getId)
+            .collect(Collectors.toSet());
+        for (Long tripId : tripIds) {
+            if (tripGenerations.getOrDefault(tripId, 0L) > searchGeneration) {
+                return;
+            }
+        }
+        Iterator<Change> changes = recentChanges.descendingIterator();
+        while (changes.hasNext()) {
+            Change change = changes.next();
+            if (change.generation <= searchGeneration) {
+                break;
+            }
+            if (matches(key, change.trip)) {
+                return;
+            }
+        }
+
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        Entry entry = new Entry(page, tripIds, System.currentTimeMillis() + ttlSeconds * 1000);
+        entries.put(key, entry);
+        for (Long tripId : tripIds) {
+            keysByTrip.computeIfAbsent(tripId, id -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Drop the entries a change to this trip could affect: those holding it,
+     * and those whose criteria it now satisfies. Scans the whole cache.
+     */
+    public synchronized void invalidateTrip(Voyage trip) {
+        long changed = ++generation;
+        tripGenerations.put(trip.getId(), changed);
+        recentChanges.addLast(new Change(changed, trip));
+        if (recentChanges.size() > MAX_RECENT_CHANGES) {
+            forgottenBefore = recentChanges.removeFirst().generation;
+        }
+
+        Iterator<Map.Entry<SearchTripRequest, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<SearchTripRequest, Entry> entry = it.next();
+            if (entry.getValue().tripIds.contains(trip.getId()) || matches(entry.getKey(), trip)) {
+                it.remove();
+                unindex(entry.getKey(), entry.getValue());
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop the entries holding a trip that only lost seats. Such a trip can
+     * drop out of searches but never start matching new ones, so this only
+     * visits the entries holding it.
+     */
+    public synchronized void invalidateSeatsTaken(Long tripId) {
+        tripGenerations.put(tripId, ++generation);
+        Set<SearchTripRequest> keys = keysByTrip.get(tripId);
+        if (keys == null) {
+            return;
+        }
+        for (SearchTripRequest key : new ArrayList<>(keys)) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                unindex(key, entry);
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        forgottenBefore = generation;
+        entries.clear();
+        keysByTrip.clear();
+        tripGenerations.clear();
+        recentChanges.clear();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void unindex(SearchTripRequest key, Entry entry) {
+        for (Long tripId : entry.tripIds) {
+            Set<SearchTripRequest> keys = keysByTrip.get(tripId);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTrip.remove(tripId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the trip, in its current state, satisfies the criteria of a cached search.
+     */
+    private boolean matches(SearchTripRequest key, Voyage trip) {
+        if (trip.getStatus() != Voyage.VoyageStatus.PLANNED) {
+            return false;
+        }
+        if (!trip.getDepartureTime().isAfter(key.getDepartureTime())) {
+            return false;
+        }
+        if (key.getMaxDepartureTime() != null && !trip.getDepartureTime().isBefore(key.getMaxDepartureTime())) {
+            return false;
+        }
+        if (key.getMinPrice() != null && trip.getPricePerSeat() < key.getMinPrice()) {
+            return false;
+        }
+        if (key.getMaxPrice() != null && trip.getPricePerSeat() > key.getMaxPrice()) {
+            return false;
+        }
+        if (trip.getAvailableSeats() < key.getNumberOfSeats()) {
+            return false;
+        }
+        if (key.getStartCity() != null || key.getEndCity() != null) {
+            Long startCityId = tripCityIndex.cityId(key.getStartCity());
+            Long endCityId = tripCityIndex.cityId(key.getEndCity());
+            if ((key.getStartCity() != null && startCityId == null) || (key.getEndCity() != null && endCityId == null)
+                || !tripCityIndex.matches(trip.getId(), startCityId, endCityId)) {
+                return false;
+            }
+        }
+        if (key.getStartLatitude() != null && key.getStartLongitude() != null &&
+            key.getEndLatitude() != null && key.getEndLongitude() != null) {
+            return tripSpatialIndex.matches(trip.getId(), key.getStartLatitude(), key.getStartLongitude(),
+                key.getEndLatitude(), key.getEndLongitude(), key.getSearchRadiusKm());
+        }
+        return true;
+    }
+
+    private static LocalDateTime floorToBucket(LocalDateTime time) {
+        if (time == null) {
+            return null;
+        }
+        LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+        int minutes = (time.getMinute() / DATE_BUCKET_MINUTES) * DATE_BUCKET_MINUTES;
+        return hour.plusMinutes(minutes);
+    }
+
+    private static LocalDateTime ceilToBucket(LocalDateTime time) {
+        if (time == null) {
+            return null;
+        }
+        LocalDateTime floor = floorToBucket(time);
+        return floor.equals(time) ? floor : floor.plusMinutes(DATE_BUCKET_MINUTES);
+    }
+
+    private static Double round(Double coordinate) {
+        if (coordinate == null) {
+            return null;
+        }
+        return Math.round(coordinate * COORDINATE_SCALE) / COORDINATE_SCALE;
+    }
+
+    private static String normalizeCity(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return CityNameTrie.normalize(value);
+    }
+
+    private record Change(long generation, Voyage trip) {
+    }
+
+    private static class Entry {
+        private final TripPage page;
+        private final Set<Long> tripIds;
+        private final long expiresAt;
+
+        private Entry(TripPage page, Set<Long> tripIds, long expiresAt) {
+            this.page = page;
+            this.tripIds = tripIds;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package esprit.pfe.covoiturage_final.services;
 
 import esprit.pfe.covoiturage_final.dto.*;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TripService {
     
@@ -10,7 +12,8 @@ public interface TripService {
     TripResponse createTrip(CreateTripRequest request, Long driverId);
     TripResponse getTripById(Long tripId);
     List<TripResponse> getTripsByDriver(Long driverId);
-    List<TripResponse> searchTrips(SearchTripRequest request);
+    TripPage searchTrips(SearchTripRequest request);
+    TripPage streamSearchTrips(SearchTripRequest request, Consumer<TripResponse> consumer);
     TripResponse updateTrip(Long tripId, CreateTripRequest request, Long driverId);
     void cancelTrip(Long tripId, Long driverId);
     void deleteTrip(Long tripId, Long driverId);
@@ -26,9 +29,17 @@ public interface TripService {
     List<BookingResponse> getBookingsByTrip(Long tripId);
     BookingResponse confirmBooking(Long bookingId, Long driverId);
     BookingResponse cancelBooking(Long bookingId, Long userId);
+    List<BookingDecisionResult> decideBookings(Long tripId, BookingDecisionRequest request, Long driverId);
+    void expirePendingBookings(Collection<Long> bookingIds);
+    
+    // Waitlist
+    WaitlistResponse joinWaitlist(BookingRequest request, Long passengerId);
+    List<WaitlistResponse> getWaitlistByPassenger(Long passengerId);
+    WaitlistResponse leaveWaitlist(Long entryId, Long passengerId);
     
     // Trip Statistics
     List<TripResponse> getAvailableTrips();
+    TripPage getAvailableTrips(String cursor, Integer pageSize);
     List<TripResponse> getUpcomingTrips(Long userId);
     List<TripResponse> getCompletedTrips(Long userId);
 }
@@ -3,20 +3,48 @@ package esprit.pfe.covoiturage_final.services;
 import esprit.pfe.covoiturage_final.dto.*;
 import esprit.pfe.covoiturage_final.entities.*;
 import esprit.pfe.covoiturage_final.repositories.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Objects;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class TripServiceImpl implements TripService {
     
+    private static final Logger logger = LoggerFactory.getLogger(TripServiceImpl.class);
+    
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    // Upper bound on the trips scored by one relevance search
+    private static final int MAX_RANKING_CANDIDATES = 5000;
+    
+    private static final Sort KEYSET_SORT = Sort.by("departureTime").ascending().and(Sort.by("id").ascending());
+    
     @Autowired
     private VoyageRepository voyageRepository;
     
@@ -38,6 +66,57 @@ public class TripServiceImpl implements TripService {
     @Autowired
     private NotificationService notificationService;
     
+    @Autowired
+    private TripSpatialIndex tripSpatialIndex;
+    
+    @Autowired
+    private TripSearchCache tripSearchCache;
+    
+    @Autowired
+    private TripTimeIndex tripTimeIndex;
+    
+    @Autowired
+    private TripRanker tripRanker;
+    
+    @Autowired
+    private TripCityIndex tripCityIndex;
+    
+    @Autowired
+    private CityNameTrie cityNameTrie;
+    
+    @Autowired
+    private SeatLedger seatLedger;
+    
+    @Autowired
+    private SeatHoldExpiry seatHoldExpiry;
+    
+    @Autowired
+    private WaitlistEntryRepository waitlistEntryRepository;
+    
+    @Autowired
+    private TripWaitlist tripWaitlist;
+    
+    @Autowired
+    private ReservationEventLog reservationEventLog;
+    
+    @Autowired
+    private TripResponseAssembler tripResponseAssembler;
+    
+    @Autowired
+    private BookingResponseAssembler bookingResponseAssembler;
+    
+    @Autowired
+    private DriverSummaryCache driverSummaryCache;
+    
+    @Autowired
+    private TripReadModelRepository tripReadModelRepository;
+    
+    @Autowired
+    private TripReadModelProjector tripReadModelProjector;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
     @Override
     public TripResponse createTrip(CreateTripRequest request, Long driverId) {
         // Get driver
@@ -62,7 +141,10 @@ public class TripServiceImpl implements TripService {
         trip = voyageRepository.save(trip);
         
         // Create GPS points
-        createGPSPoints(trip.getId(), request);
+        List<Point_GPS> points = createGPSPoints(trip.getId(), request);
+        // Registered ahead of onTripChanged, so the route is indexed before cached searches are matched against it
+        Long tripId = trip.getId();
+        afterCommit(() -> tripSpatialIndex.index(tripId, points));
         
         // Send notification to driver
         notificationService.notifyTripCreated(driverId, trip.getId(), trip.getDescription());
@@ -74,74 +156,335 @@ public class TripServiceImpl implements TripService {
             voyageRepository.save(trip);
         }
         
-        // Add cities if provided - using city names instead of IDs
-        if (request.getDepartureCity() != null && request.getArrivalCity() != null) {
-            // In a real implementation, you would find cities by name
-            // For now, we'll skip this as the relationship is complex
+        // Add cities if provided, in route order
+        if (request.getVilleIds() != null && !request.getVilleIds().isEmpty()) {
+            assignCities(trip, request.getVilleIds());
         }
         
-        return convertToTripResponse(trip);
+        TripResponse response = tripReadModelProjector.refresh(trip);
+        onTripChanged(trip);
+        
+        return response;
     }
     
     @Override
+    @Transactional(readOnly = true)
     public TripResponse getTripById(Long tripId) {
-        Voyage trip = voyageRepository.findById(tripId)
+        TripReadModel trip = tripReadModelRepository.findById(tripId)
             .orElseThrow(() -> new RuntimeException("Trip not found"));
-        return convertToTripResponse(trip);
+        return tripReadModelProjector.toResponse(trip);
     }
     
     @Override
+    @Transactional(readOnly = true)
     public List<TripResponse> getTripsByDriver(Long driverId) {
-        List<Voyage> trips = voyageRepository.findByConducteurId(driverId);
-        return trips.stream()
-            .map(this::convertToTripResponse)
-            .collect(Collectors.toList());
+        List<TripReadModel> trips = tripReadModelRepository.findByDriverId(driverId);
+        return tripReadModelProjector.toResponses(trips);
     }
     
     @Override
-    public List<TripResponse> searchTrips(SearchTripRequest request) {
-        // For now, return available trips - in a real implementation, 
-        // you would implement complex search logic with GPS calculations
-        List<Voyage> trips = voyageRepository.findAvailableTrips();
+    @Transactional(readOnly = true)
+    public TripPage searchTrips(SearchTripRequest request) {
+        SearchTripRequest key = tripSearchCache.canonicalize(request);
+        TripPage cached = tripSearchCache.get(key);
+        if (cached != null) {
+            return clipToWindow(cached, request);
+        }
         
-        // Filter by date range
-        if (request.getMaxDepartureTime() != null) {
-            trips = trips.stream()
-                .filter(trip -> trip.getDepartureTime().isAfter(request.getDepartureTime()) &&
-                               trip.getDepartureTime().isBefore(request.getMaxDepartureTime()))
+        // Taken before the search reads anything, so a change committed meanwhile keeps its page out of the cache
+        long generation = tripSearchCache.generation();
+        TripPage page = toTripPage(executeSearch(key));
+        tripSearchCache.put(key, page, generation);
+        return clipToWindow(page, request);
+    }
+    
+    /**
+     * Runs outside any transaction: only the page's read model rows are loaded,
+     * in a short read-only one. Each row is converted and handed to the consumer
+     * after it has closed, so the first trip goes out without waiting for the
+     * rest and a slow client never holds a database connection. Streamed pages
+     * are not cached.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public TripPage streamSearchTrips(SearchTripRequest request, Consumer<TripResponse> consumer) {
+        SearchTripRequest key = tripSearchCache.canonicalize(request);
+        TripPage cached = tripSearchCache.get(key);
+        if (cached != null) {
+            TripPage page = clipToWindow(cached, request);
+            page.getTrips().forEach(consumer);
+            return new TripPage(new ArrayList<>(), page.getNextCursor(), page.getHasNext());
+        }
+        
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        TripRowPage result = transaction.execute(status -> executeSearch(key));
+        boolean pastEnd = false;
+        for (TripReadModel trip : result.trips()) {
+            if (endsAfterWindow(trip.getDepartureTime(), request)) {
+                pastEnd = true;
+            } else if (startsInWindow(trip.getDepartureTime(), request)) {
+                consumer.accept(tripReadModelProjector.toResponse(trip));
+            }
+        }
+        return pastEnd
+            ? new TripPage(new ArrayList<>(), null, false)
+            : new TripPage(new ArrayList<>(), result.nextCursor(), result.hasNext());
+    }
+    
+    /**
+     * The cache key widens the departure window to whole buckets, and the search
+     * runs with the key, so its page can hold trips just outside the caller's
+     * window. Drop them; a trip past the end of the window also ends the paging.
+     */
+    private TripPage clipToWindow(TripPage page, SearchTripRequest request) {
+        List<TripResponse> trips = new ArrayList<>(page.getTrips().size());
+        boolean pastEnd = false;
+        for (TripResponse trip : page.getTrips()) {
+            if (endsAfterWindow(trip.getDepartureTime(), request)) {
+                pastEnd = true;
+            } else if (startsInWindow(trip.getDepartureTime(), request)) {
+                trips.add(trip);
+            }
+        }
+        return pastEnd
+            ? new TripPage(trips, null, false)
+            : new TripPage(trips, page.getNextCursor(), page.getHasNext());
+    }
+    
+    private static boolean startsInWindow(LocalDateTime departure, SearchTripRequest request) {
+        return request.getDepartureTime() == null || departure.isAfter(request.getDepartureTime());
+    }
+    
+    private static boolean endsAfterWindow(LocalDateTime departure, SearchTripRequest request) {
+        return request.getMaxDepartureTime() != null && !departure.isBefore(request.getMaxDepartureTime());
+    }
+    
+    private TripRowPage executeSearch(SearchTripRequest request) {
+        int seats = request.getNumberOfSeats() != null ? request.getNumberOfSeats() : 1;
+        int pageSize = boundedPageSize(request.getPageSize());
+        
+        Set<Long> candidateTripIds = null;
+        if (hasCoordinates(request)) {
+            // Narrow down to trips whose route passes near the pickup and then the drop-off point
+            candidateTripIds = tripSpatialIndex.findTrips(
+                request.getStartLatitude(), request.getStartLongitude(),
+                request.getEndLatitude(), request.getEndLongitude(), searchRadius(request));
+            if (candidateTripIds.isEmpty()) {
+                return new TripRowPage(new ArrayList<>(), null, false);
+            }
+        }
+        
+        if (hasCities(request)) {
+            // Trips visiting the departure city and then the arrival city, from the city index
+            Set<Long> cityTripIds = findTripsByCity(request);
+            if (candidateTripIds != null) {
+                cityTripIds.retainAll(candidateTripIds);
+            }
+            candidateTripIds = cityTripIds;
+            if (candidateTripIds.isEmpty()) {
+                return new TripRowPage(new ArrayList<>(), null, false);
+            }
+        }
+        
+        if (request.getSortBy() == SearchTripRequest.SortOrder.RELEVANCE) {
+            return rankedSearch(request, seats, candidateTripIds, pageSize);
+        }
+        
+        TripCursor cursor = null;
+        if (request.getCursor() != null && !request.getCursor().isBlank()) {
+            cursor = TripCursor.decode(request.getCursor());
+        }
+        
+        List<TripReadModel> trips;
+        if (tripTimeIndex.isReady()) {
+            trips = findIndexedPage(request, seats, candidateTripIds, cursor, pageSize);
+        } else {
+            trips = findTripPage(searchSpecification(request, seats, candidateTripIds, cursor), pageSize);
+        }
+        return toTripRowPage(trips, pageSize);
+    }
+    
+    /**
+     * Serve the window from the in-memory time index, then load only the page's
+     * trips. Rows failing the recheck are replaced by asking the index for the
+     * slots after the last one it returned, until the page has pageSize + 1
+     * rows or the index has no more, so a stale slot cannot end the paging.
+     */
+    private List<TripReadModel> findIndexedPage(SearchTripRequest request, int seats, Set<Long> candidateTripIds,
+                                                TripCursor cursor, int pageSize) {
+        Predicate<TripTimeIndex.Slot> filter = slotFilter(request, seats, candidateTripIds);
+        List<TripReadModel> trips = new ArrayList<>(pageSize + 1);
+        TripCursor scanAfter = cursor;
+        while (true) {
+            int wanted = pageSize + 1 - trips.size();
+            List<TripTimeIndex.Slot> slots = tripTimeIndex.searchSlots(request.getDepartureTime(),
+                request.getMaxDepartureTime(), scanAfter, filter, wanted);
+            List<Long> tripIds = slots.stream()
+                .map(TripTimeIndex.Slot::getId)
+                .collect(Collectors.toList());
+            trips.addAll(findPlannedTripsInOrder(tripIds, request, seats, cursor));
+            if (slots.size() < wanted || trips.size() > pageSize) {
+                return trips;
+            }
+            TripTimeIndex.Slot last = slots.get(slots.size() - 1);
+            scanAfter = new TripCursor(last.getDepartureTime(), last.getId());
+        }
+    }
+    
+    /**
+     * Rank every trip passing the filters and return the best pageSize of them.
+     * Relevance pages are not cursor-paginated.
+     */
+    private TripRowPage rankedSearch(SearchTripRequest request, int seats, Set<Long> candidateTripIds, int pageSize) {
+        List<TripRanker.Candidate> candidates;
+        if (tripTimeIndex.isReady()) {
+            candidates = tripTimeIndex.searchSlots(request.getDepartureTime(), request.getMaxDepartureTime(),
+                    null, slotFilter(request, seats, candidateTripIds), MAX_RANKING_CANDIDATES).stream()
+                .map(slot -> rankingCandidate(request, slot.getId(), slot.getDriverId(),
+                    slot.getDepartureTime(), slot.getPricePerSeat()))
                 .collect(Collectors.toList());
         } else {
-            trips = trips.stream()
-                .filter(trip -> trip.getDepartureTime().isAfter(request.getDepartureTime()))
+            candidates = findTripPage(searchSpecification(request, seats, candidateTripIds, null), MAX_RANKING_CANDIDATES).stream()
+                .map(trip -> rankingCandidate(request, trip.getId(), trip.getDriverId(),
+                    trip.getDepartureTime(), trip.getPricePerSeat()))
                 .collect(Collectors.toList());
         }
         
+        Set<Long> driverIds = candidates.stream()
+            .map(TripRanker.Candidate::getDriverId)
+            .collect(Collectors.toSet());
+        Map<Long, Double> driverRatings = new HashMap<>();
+        for (DriverSummaryCache.DriverSummary driver : driverSummaryCache.getAll(driverIds).values()) {
+            if (driver.rating() != null) {
+                driverRatings.put(driver.id(), driver.rating());
+            }
+        }
+        
+        List<Long> rankedIds = tripRanker.topK(candidates, driverRatings, request.getDepartureTime(),
+            searchRadius(request), pageSize);
+        return new TripRowPage(findPlannedTripsInOrder(rankedIds, request, seats, null), null, false);
+    }
+    
+    private TripRanker.Candidate rankingCandidate(SearchTripRequest request, Long tripId, Long driverId,
+                                                  LocalDateTime departureTime, double pricePerSeat) {
+        Double pickupKm = null;
+        Double dropoffKm = null;
+        if (hasCoordinates(request)) {
+            pickupKm = tripSpatialIndex.distanceToRoute(tripId, request.getStartLatitude(), request.getStartLongitude());
+            dropoffKm = tripSpatialIndex.distanceToRoute(tripId, request.getEndLatitude(), request.getEndLongitude());
+        }
+        return new TripRanker.Candidate(tripId, driverId, departureTime, pricePerSeat, pickupKm, dropoffKm);
+    }
+    
+    private Specification<TripReadModel> searchSpecification(SearchTripRequest request, int seats,
+                                                             Set<Long> candidateTripIds, TripCursor cursor) {
+        List<Specification<TripReadModel>> predicates = new ArrayList<>();
+        predicates.add(VoyageSpecifications.hasStatus(Voyage.VoyageStatus.PLANNED));
+        predicates.add(VoyageSpecifications.departureAfter(request.getDepartureTime()));
+        
+        // Filter by date range
+        if (request.getMaxDepartureTime() != null) {
+            predicates.add(VoyageSpecifications.departureBefore(request.getMaxDepartureTime()));
+        }
+        
         // Filter by price range
         if (request.getMinPrice() != null) {
-            trips = trips.stream()
-                .filter(trip -> trip.getPricePerSeat() >= request.getMinPrice())
-                .collect(Collectors.toList());
+            predicates.add(VoyageSpecifications.priceAtLeast(request.getMinPrice()));
         }
         
         if (request.getMaxPrice() != null) {
-            trips = trips.stream()
-                .filter(trip -> trip.getPricePerSeat() <= request.getMaxPrice())
-                .collect(Collectors.toList());
+            predicates.add(VoyageSpecifications.priceAtMost(request.getMaxPrice()));
         }
         
         // Filter by available seats
-        trips = trips.stream()
-            .filter(trip -> trip.getAvailableSeats() >= request.getNumberOfSeats())
-            .collect(Collectors.toList());
+        predicates.add(VoyageSpecifications.seatsAtLeast(seats));
         
-        return trips.stream()
-            .map(this::convertToTripResponse)
+        if (candidateTripIds != null) {
+            predicates.add(VoyageSpecifications.idIn(candidateTripIds));
+        }
+        
+        if (cursor != null) {
+            predicates.add(VoyageSpecifications.afterCursor(cursor.getDepartureTime(), cursor.getId()));
+        }
+        
+        return Specification.allOf(predicates);
+    }
+    
+    /**
+     * In-memory equivalent of the price, seat and location predicates of {@link #searchSpecification}.
+     */
+    private Predicate<TripTimeIndex.Slot> slotFilter(SearchTripRequest request, int seats, Set<Long> candidateTripIds) {
+        Double minPrice = request.getMinPrice();
+        Double maxPrice = request.getMaxPrice();
+        return slot -> slot.getAvailableSeats() >= seats
+            && (minPrice == null || slot.getPricePerSeat() >= minPrice)
+            && (maxPrice == null || slot.getPricePerSeat() <= maxPrice)
+            && (candidateTripIds == null || candidateTripIds.contains(slot.getId()));
+    }
+    
+    /**
+     * Row-level check of the status, window, price, seat and cursor predicates of {@link #searchSpecification}.
+     */
+    private boolean matchesSearch(TripReadModel trip, SearchTripRequest request, int seats, TripCursor cursor) {
+        LocalDateTime departure = trip.getDepartureTime();
+        return trip.getStatus() == Voyage.VoyageStatus.PLANNED
+            && trip.getAvailableSeats() != null && trip.getAvailableSeats() >= seats
+            && departure != null && departure.isAfter(request.getDepartureTime())
+            && (request.getMaxDepartureTime() == null || departure.isBefore(request.getMaxDepartureTime()))
+            && (request.getMinPrice() == null || trip.getPricePerSeat() >= request.getMinPrice())
+            && (request.getMaxPrice() == null || trip.getPricePerSeat() <= request.getMaxPrice())
+            && (cursor == null || departure.isAfter(cursor.getDepartureTime())
+                || (departure.isEqual(cursor.getDepartureTime()) && trip.getId() > cursor.getId()));
+    }
+    
+    private boolean hasCoordinates(SearchTripRequest request) {
+        return request.getStartLatitude() != null && request.getStartLongitude() != null &&
+            request.getEndLatitude() != null && request.getEndLongitude() != null;
+    }
+    
+    private boolean hasCities(SearchTripRequest request) {
+        return (request.getStartCity() != null && !request.getStartCity().isBlank()) ||
+            (request.getEndCity() != null && !request.getEndCity().isBlank());
+    }
+    
+    private Set<Long> findTripsByCity(SearchTripRequest request) {
+        boolean hasStart = request.getStartCity() != null && !request.getStartCity().isBlank();
+        boolean hasEnd = request.getEndCity() != null && !request.getEndCity().isBlank();
+        Long startCityId = tripCityIndex.cityId(request.getStartCity());
+        Long endCityId = tripCityIndex.cityId(request.getEndCity());
+        if ((hasStart && startCityId == null) || (hasEnd && endCityId == null)) {
+            return new HashSet<>();
+        }
+        if (hasStart && hasEnd) {
+            return tripCityIndex.findTrips(startCityId, endCityId);
+        }
+        return tripCityIndex.findTrips(hasStart ? startCityId : endCityId);
+    }
+    
+    private double searchRadius(SearchTripRequest request) {
+        return request.getSearchRadiusKm() != null ? request.getSearchRadiusKm() : 10.0;
+    }
+    
+    /**
+     * Load trips by id keeping the given order, skipping any that are gone or
+     * no longer match the search. The ids come from the in-memory indexes,
+     * which may lag behind the trips, so the loaded rows are checked again.
+     */
+    private List<TripReadModel> findPlannedTripsInOrder(List<Long> tripIds, SearchTripRequest request, int seats,
+                                                        TripCursor cursor) {
+        Map<Long, TripReadModel> tripsById = tripReadModelRepository.findAllById(tripIds).stream()
+            .collect(Collectors.toMap(TripReadModel::getId, Function.identity()));
+        return tripIds.stream()
+            .map(tripsById::get)
+            .filter(trip -> trip != null && matchesSearch(trip, request, seats, cursor))
             .collect(Collectors.toList());
     }
     
     @Override
     public TripResponse updateTrip(Long tripId, CreateTripRequest request, Long driverId) {
-        Voyage trip = voyageRepository.findById(tripId)
+        // The whole row is written back below, so no booking may change its seats in between
+        Voyage trip = voyageRepository.findByIdForUpdate(tripId)
             .orElseThrow(() -> new RuntimeException("Trip not found"));
         
         if (!trip.getConducteurId().equals(driverId)) {
@@ -158,21 +501,38 @@ public class TripServiceImpl implements TripService {
         trip.setPricePerSeat(request.getPricePerSeat().doubleValue());
         trip.setDescription(request.getDescription());
         
-        // Update max seats (but not available seats if there are existing bookings)
-        int currentBookings = reservationRepository.countConfirmedReservationsByVoyageId(tripId).intValue();
-        if (request.getMaxSeats() < currentBookings) {
-            throw new RuntimeException("Cannot reduce seats below current bookings");
+        // Update max seats, keeping every seat held by a pending or confirmed booking
+        int oldMaxSeats = trip.getMaxSeats();
+        int newMaxSeats = request.getMaxSeats();
+        if (seatLedger.isEnabled()) {
+            // Ledger bookings never lock the row; the live counter also holds the seats of uncommitted ones
+            if (!seatLedger.resize(tripId, oldMaxSeats, newMaxSeats)) {
+                throw new RuntimeException("Cannot reduce seats below current bookings");
+            }
+            afterRollback(() -> seatLedger.undoResize(tripId, oldMaxSeats, newMaxSeats));
+            trip.setAvailableSeats(seatLedger.availableSeats(trip));
+        } else {
+            int heldSeats = reservationRepository.sumActiveSeatsByVoyageId(tripId).intValue();
+            if (newMaxSeats < heldSeats) {
+                throw new RuntimeException("Cannot reduce seats below current bookings");
+            }
+            trip.setAvailableSeats(newMaxSeats - heldSeats);
         }
-        
-        trip.setMaxSeats(request.getMaxSeats());
-        trip.setAvailableSeats(request.getMaxSeats() - currentBookings);
+        trip.setMaxSeats(newMaxSeats);
         
         trip = voyageRepository.save(trip);
         
         // Update GPS points
-        updateGPSPoints(tripId, request);
+        List<Point_GPS> points = updateGPSPoints(tripId, request);
+        afterCommit(() -> tripSpatialIndex.index(tripId, points));
         
-        return convertToTripResponse(trip);
+        if (request.getVilleIds() != null) {
+            assignCities(trip, request.getVilleIds());
+        }
+        TripResponse response = tripReadModelProjector.refresh(trip);
+        onTripChanged(trip);
+        
+        return response;
     }
     
     @Override
@@ -188,22 +548,28 @@ public class TripServiceImpl implements TripService {
             throw new RuntimeException("Cannot cancel completed trips");
         }
         
+        // Writing the status first locks the trip row. Bookings either lock it too (reserveSeats, or
+        // the shared lock of ledger bookings) and committed before, or see CANCELLED once they get it
         trip.setStatus(Voyage.VoyageStatus.CANCELLED);
-        voyageRepository.save(trip);
-        
-        // Cancel all pending reservations
-        List<Reservation> reservations = reservationRepository.findByVoyageIdAndStatus(tripId, Reservation.ReservationStatus.PENDING);
-        List<Long> passengerIds = reservations.stream()
-            .map(Reservation::getPassagerId)
-            .collect(Collectors.toList());
-        
-        reservations.forEach(reservation -> {
-            reservation.setStatus(Reservation.ReservationStatus.CANCELLED);
-            reservationRepository.save(reservation);
-        });
+        voyageRepository.saveAndFlush(trip);
+        afterCommit(() -> tripSpatialIndex.remove(tripId));
+        onTripChanged(trip);
+        
+        // Cancel exactly the bookings read here, in one statement, so each gets its event and notification
+        List<Reservation> cancelled = reservationRepository.findActiveByVoyageIdForUpdate(tripId);
+        if (!cancelled.isEmpty()) {
+            reservationRepository.cancelActive(cancelled.stream().map(Reservation::getId).collect(Collectors.toList()));
+        }
+        Set<Long> passengerIds = new HashSet<>();
+        for (Reservation reservation : cancelled) {
+            reservationEventLog.record(reservation, ReservationEvent.EventType.CANCELLED);
+            passengerIds.add(reservation.getPassagerId());
+        }
+        passengerIds.addAll(closeWaitlist(tripId));
         
         // Send notifications
-        notificationService.notifyTripCancelled(driverId, passengerIds, tripId, "Trip cancelled by driver");
+        List<Long> notifiedIds = new ArrayList<>(passengerIds);
+        afterCommit(() -> notificationService.notifyTripCancelled(driverId, notifiedIds, tripId, "Trip cancelled by driver"));
     }
     
     @Override
@@ -226,6 +592,8 @@ public class TripServiceImpl implements TripService {
         }
         
         voyageRepository.delete(trip);
+        afterCommit(() -> tripSpatialIndex.remove(tripId));
+        onTripRemoved(trip);
     }
     
     @Override
@@ -243,6 +611,9 @@ public class TripServiceImpl implements TripService {
         
         trip.setStatus(Voyage.VoyageStatus.ACTIVE);
         trip = voyageRepository.save(trip);
+        afterCommit(() -> tripSpatialIndex.remove(tripId));
+        onTripChanged(trip);
+        closeWaitlist(tripId);
         
         return convertToTripResponse(trip);
     }
@@ -262,6 +633,7 @@ public class TripServiceImpl implements TripService {
         
         trip.setStatus(Voyage.VoyageStatus.COMPLETED);
         trip = voyageRepository.save(trip);
+        tripReadModelProjector.update(trip);
         
         return convertToTripResponse(trip);
     }
@@ -276,7 +648,7 @@ public class TripServiceImpl implements TripService {
             throw new RuntimeException("Can only book planned trips");
         }
         
-        if (trip.getAvailableSeats() < request.getNumberOfSeats()) {
+        if (seatLedger.availableSeats(trip) < request.getNumberOfSeats()) {
             throw new RuntimeException("Not enough available seats");
         }
         
@@ -288,6 +660,25 @@ public class TripServiceImpl implements TripService {
             throw new RuntimeException("User is not a passenger");
         }
         
+        // Take the seats atomically so concurrent bookings cannot oversell the trip
+        if (seatLedger.isEnabled()) {
+            // The ledger never writes the trip row, so check the status again under a shared lock on it
+            if (voyageRepository.findStatusForShare(trip.getId()) != Voyage.VoyageStatus.PLANNED) {
+                throw new RuntimeException("Can only book planned trips");
+            }
+            if (!seatLedger.tryReserve(trip, request.getNumberOfSeats())) {
+                throw new RuntimeException("Not enough available seats");
+            }
+            Voyage reservedTrip = trip;
+            afterRollback(() -> seatLedger.release(reservedTrip, request.getNumberOfSeats()));
+        } else {
+            if (voyageRepository.reserveSeats(trip.getId(), request.getNumberOfSeats()) == 0) {
+                throw new RuntimeException("Not enough available seats");
+            }
+            trip = voyageRepository.findById(request.getTripId())
+                .orElseThrow(() -> new RuntimeException("Trip not found"));
+        }
+        
         // Create reservation
         Reservation reservation = new Reservation();
         reservation.setVoyageId(request.getTripId());
@@ -298,10 +689,13 @@ public class TripServiceImpl implements TripService {
         reservation.setNotes(request.getNotes());
         
         reservation = reservationRepository.save(reservation);
+        reservationEventLog.record(reservation, ReservationEvent.EventType.BOOKED);
+        onTripChanged(trip, true);
         
-        // Update available seats
-        trip.setAvailableSeats(trip.getAvailableSeats() - request.getNumberOfSeats());
-        voyageRepository.save(trip);
+        // Release the seats automatically if the driver does not confirm in time
+        Long reservationId = reservation.getId();
+        LocalDateTime reservedAt = reservation.getReservationDate();
+        afterCommit(() -> seatHoldExpiry.hold(reservationId, reservedAt));
         
         // Send notification to driver
         notificationService.notifyBookingCreated(trip.getConducteurId(), passengerId, reservation.getId(), request.getNumberOfSeats());
@@ -310,6 +704,7 @@ public class TripServiceImpl implements TripService {
     }
     
     @Override
+    @Transactional(readOnly = true)
     public BookingResponse getBookingById(Long bookingId) {
         Reservation reservation = reservationRepository.findById(bookingId)
             .orElseThrow(() -> new RuntimeException("Booking not found"));
@@ -317,19 +712,17 @@ public class TripServiceImpl implements TripService {
     }
     
     @Override
+    @Transactional(readOnly = true)
     public List<BookingResponse> getBookingsByPassenger(Long passengerId) {
-        List<Reservation> reservations = reservationRepository.findByPassagerId(passengerId);
-        return reservations.stream()
-            .map(this::convertToBookingResponse)
-            .collect(Collectors.toList());
+        List<BookingSummary> bookings = reservationRepository.findSummariesByPassagerId(passengerId);
+        return bookingResponseAssembler.toSummaryResponses(bookings);
     }
     
     @Override
+    @Transactional(readOnly = true)
     public List<BookingResponse> getBookingsByTrip(Long tripId) {
-        List<Reservation> reservations = reservationRepository.findByVoyageId(tripId);
-        return reservations.stream()
-            .map(this::convertToBookingResponse)
-            .collect(Collectors.toList());
+        List<BookingSummary> bookings = reservationRepository.findSummariesByVoyageId(tripId);
+        return bookingResponseAssembler.toSummaryResponses(bookings);
     }
     
     @Override
@@ -348,8 +741,12 @@ public class TripServiceImpl implements TripService {
             throw new RuntimeException("Can only confirm pending bookings");
         }
         
+        // Conditional so a hold expiring at the same moment cannot be overwritten
+        if (reservationRepository.confirmIfPending(bookingId) == 0) {
+            throw new RuntimeException("Can only confirm pending bookings");
+        }
         reservation.setStatus(Reservation.ReservationStatus.CONFIRMED);
-        reservation = reservationRepository.save(reservation);
+        reservationEventLog.record(reservation, ReservationEvent.EventType.CONFIRMED);
         
         // Send notification to passenger
         notificationService.notifyBookingConfirmed(reservation.getPassagerId(), bookingId);
@@ -378,12 +775,15 @@ public class TripServiceImpl implements TripService {
             throw new RuntimeException("Cannot cancel completed bookings");
         }
         
+        // Cancel and give the seats back atomically, so a booking cancelled twice concurrently is only released once
+        if (reservationRepository.cancelIfActive(bookingId) == 0) {
+            throw new RuntimeException("Booking is already cancelled");
+        }
         reservation.setStatus(Reservation.ReservationStatus.CANCELLED);
-        reservation = reservationRepository.save(reservation);
+        reservationEventLog.record(reservation, ReservationEvent.EventType.CANCELLED);
         
-        // Update available seats
-        trip.setAvailableSeats(trip.getAvailableSeats() + reservation.getNumberOfSeats());
-        voyageRepository.save(trip);
+        trip = returnSeats(trip, reservation.getNumberOfSeats());
+        onTripChanged(trip);
         
         // Send notifications
         if (userId.equals(reservation.getPassagerId())) {
@@ -398,217 +798,583 @@ public class TripServiceImpl implements TripService {
     }
     
     @Override
-    public List<TripResponse> getAvailableTrips() {
-        List<Voyage> trips = voyageRepository.findAvailableTrips();
-        return trips.stream()
-            .map(this::convertToTripResponse)
+    public List<BookingDecisionResult> decideBookings(Long tripId, BookingDecisionRequest request, Long driverId) {
+        Voyage trip = voyageRepository.findById(tripId)
+            .orElseThrow(() -> new RuntimeException("Trip not found"));
+        
+        if (!trip.getConducteurId().equals(driverId)) {
+            throw new RuntimeException("You can only manage bookings for your own trips");
+        }
+        
+        boolean confirm = request.getDecision() == BookingDecisionRequest.Decision.CONFIRM;
+        Reservation.ReservationStatus target = confirm
+            ? Reservation.ReservationStatus.CONFIRMED
+            : Reservation.ReservationStatus.CANCELLED;
+        
+        // Lock the trip's requested bookings, then apply the decision to the pending ones in one UPDATE
+        Map<Long, Reservation> reservationsById = reservationRepository.findByVoyageIdAndIdIn(tripId, request.getBookingIds()).stream()
+            .collect(Collectors.toMap(Reservation::getId, Function.identity()));
+        List<Reservation> pending = reservationsById.values().stream()
+            .filter(reservation -> reservation.getStatus() == Reservation.ReservationStatus.PENDING)
             .collect(Collectors.toList());
+        List<Long> pendingIds = pending.stream()
+            .map(Reservation::getId)
+            .collect(Collectors.toList());
+        
+        if (!pendingIds.isEmpty()) {
+            for (Reservation reservation : pending) {
+                reservationEventLog.record(reservation, confirm
+                    ? ReservationEvent.EventType.CONFIRMED
+                    : ReservationEvent.EventType.CANCELLED);
+            }
+            if (confirm) {
+                reservationRepository.confirmPending(pendingIds);
+            } else {
+                reservationRepository.cancelPending(pendingIds);
+                int seats = pending.stream().mapToInt(Reservation::getNumberOfSeats).sum();
+                trip = returnSeats(trip, seats);
+                onTripChanged(trip);
+            }
+        }
+        
+        List<BookingDecisionResult> results = new ArrayList<>();
+        for (Long bookingId : request.getBookingIds()) {
+            Reservation reservation = reservationsById.get(bookingId);
+            if (reservation == null) {
+                results.add(new BookingDecisionResult(bookingId, null, false, "Booking not found for this trip"));
+            } else if (reservation.getStatus() != Reservation.ReservationStatus.PENDING) {
+                results.add(new BookingDecisionResult(bookingId, reservation.getStatus(), false, "Booking is not pending"));
+            } else {
+                results.add(new BookingDecisionResult(bookingId, target, true, null));
+            }
+        }
+        
+        // Notify every affected passenger with one call once the decisions are committed
+        if (!pending.isEmpty()) {
+            List<Long> passengerIds = pending.stream()
+                .map(Reservation::getPassagerId)
+                .distinct()
+                .collect(Collectors.toList());
+            afterCommit(() -> {
+                if (confirm) {
+                    notificationService.notifyBookingsConfirmed(tripId, passengerIds);
+                } else {
+                    notificationService.notifyBookingsCancelled(tripId, passengerIds, "Rejected by driver");
+                }
+            });
+        }
+        return results;
     }
     
     @Override
-    public List<TripResponse> getUpcomingTrips(Long userId) {
-        // Get trips where user is driver or has confirmed bookings
-        List<Voyage> driverTrips = voyageRepository.findByConducteurIdAndStatus(userId, Voyage.VoyageStatus.PLANNED);
-        List<Reservation> passengerBookings = reservationRepository.findByPassagerIdAndStatus(userId, Reservation.ReservationStatus.CONFIRMED);
+    public void expirePendingBookings(Collection<Long> bookingIds) {
+        List<Reservation> expired = reservationRepository.findByIdInAndStatus(bookingIds,
+            Reservation.ReservationStatus.PENDING);
+        if (expired.isEmpty()) {
+            return;
+        }
         
-        List<Long> tripIds = passengerBookings.stream()
-            .map(Reservation::getVoyageId)
+        List<Long> expiredIds = expired.stream()
+            .map(Reservation::getId)
             .collect(Collectors.toList());
+        reservationRepository.cancelPending(expiredIds);
+        for (Reservation reservation : expired) {
+            reservationEventLog.record(reservation, ReservationEvent.EventType.EXPIRED);
+        }
         
-        List<Voyage> passengerTrips = voyageRepository.findAllById(tripIds).stream()
-            .filter(trip -> trip.getStatus() == Voyage.VoyageStatus.PLANNED)
-            .collect(Collectors.toList());
+        // One seat release per trip, however many of its holds expired
+        Map<Long, Integer> seatsByTrip = expired.stream()
+            .collect(Collectors.groupingBy(Reservation::getVoyageId, Collectors.summingInt(Reservation::getNumberOfSeats)));
+        
+        Map<Long, Voyage> tripsById = new HashMap<>();
+        for (Voyage trip : voyageRepository.findAllById(seatsByTrip.keySet())) {
+            tripsById.put(trip.getId(), trip);
+        }
+        for (Map.Entry<Long, Integer> released : seatsByTrip.entrySet()) {
+            Voyage trip = tripsById.get(released.getKey());
+            if (trip != null) {
+                onTripChanged(returnSeats(trip, released.getValue()));
+            }
+        }
+        
+        for (Reservation reservation : expired) {
+            Voyage trip = tripsById.get(reservation.getVoyageId());
+            Long driverId = trip != null ? trip.getConducteurId() : null;
+            notificationService.notifyBookingCancelled(driverId, reservation.getPassagerId(), reservation.getId(),
+                "Booking expired before confirmation");
+        }
+    }
+    
+    @Override
+    public WaitlistResponse joinWaitlist(BookingRequest request, Long passengerId) {
+        Voyage trip = voyageRepository.findById(request.getTripId())
+            .orElseThrow(() -> new RuntimeException("Trip not found"));
+        
+        if (trip.getStatus() != Voyage.VoyageStatus.PLANNED) {
+            throw new RuntimeException("Can only join the waitlist of planned trips");
+        }
+        
+        if (request.getNumberOfSeats() > trip.getMaxSeats()) {
+            throw new RuntimeException("Requested seats exceed the trip's capacity");
+        }
+        
+        // Passengers already waiting keep their turn; otherwise the seats can simply be booked
+        if (!tripWaitlist.hasWaiting(trip.getId()) && seatLedger.availableSeats(trip) >= request.getNumberOfSeats()) {
+            throw new RuntimeException("Seats are available, book the trip instead");
+        }
+        
+        User passenger = userRepository.findById(passengerId)
+            .orElseThrow(() -> new RuntimeException("Passenger not found"));
+        
+        if (!(passenger instanceof Passager)) {
+            throw new RuntimeException("User is not a passenger");
+        }
+        
+        if (waitlistEntryRepository.existsByVoyageIdAndPassagerIdAndStatus(trip.getId(), passengerId,
+                WaitlistEntry.WaitlistStatus.WAITING)) {
+            throw new RuntimeException("You are already on the waitlist of this trip");
+        }
+        
+        if (reservationRepository.existsByVoyageIdAndPassagerIdAndStatusIn(trip.getId(), passengerId,
+                List.of(Reservation.ReservationStatus.PENDING, Reservation.ReservationStatus.CONFIRMED))) {
+            throw new RuntimeException("You already have a booking on this trip");
+        }
         
-        driverTrips.addAll(passengerTrips);
+        WaitlistEntry entry = new WaitlistEntry();
+        entry.setVoyageId(trip.getId());
+        entry.setPassagerId(passengerId);
+        entry.setNumberOfSeats(request.getNumberOfSeats());
+        entry.setNotes(request.getNotes());
+        entry.setStatus(WaitlistEntry.WaitlistStatus.WAITING);
+        entry = waitlistEntryRepository.save(entry);
+        
+        WaitlistEntry queued = entry;
+        Long tripId = trip.getId();
+        afterCommit(() -> {
+            tripWaitlist.add(queued);
+            // Seats freed before the entry reached the queue went back on sale instead of to it
+            try {
+                TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+                transaction.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+                transaction.executeWithoutResult(status -> promoteWaiting(tripId));
+            } catch (RuntimeException e) {
+                // The entry is queued; the next release on the trip offers it seats
+                logger.warn("Waitlist promotion for trip {} failed: {}", tripId, e.getMessage());
+            }
+        });
         
-        return driverTrips.stream()
-            .map(this::convertToTripResponse)
+        return convertToWaitlistResponse(entry);
+    }
+    
+    @Override
+    public List<WaitlistResponse> getWaitlistByPassenger(Long passengerId) {
+        List<WaitlistEntry> entries = waitlistEntryRepository.findByPassagerIdAndStatus(passengerId,
+            WaitlistEntry.WaitlistStatus.WAITING);
+        return entries.stream()
+            .map(this::convertToWaitlistResponse)
             .collect(Collectors.toList());
     }
     
     @Override
+    public WaitlistResponse leaveWaitlist(Long entryId, Long passengerId) {
+        WaitlistEntry entry = waitlistEntryRepository.findById(entryId)
+            .orElseThrow(() -> new RuntimeException("Waitlist entry not found"));
+        
+        if (!entry.getPassagerId().equals(passengerId)) {
+            throw new RuntimeException("You can only leave your own waitlist entries");
+        }
+        
+        // Conditional so an entry being promoted at the same moment is not cancelled
+        if (waitlistEntryRepository.cancelIfWaiting(entryId) == 0) {
+            throw new RuntimeException("Waitlist entry is no longer waiting");
+        }
+        entry.setStatus(WaitlistEntry.WaitlistStatus.CANCELLED);
+        
+        Long tripId = entry.getVoyageId();
+        afterCommit(() -> tripWaitlist.remove(tripId, entryId));
+        
+        return convertToWaitlistResponse(entry);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public List<TripResponse> getAvailableTrips() {
+        List<TripReadModel> trips = tripReadModelRepository.findAvailableTrips();
+        return tripReadModelProjector.toResponses(trips);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public TripPage getAvailableTrips(String cursor, Integer pageSize) {
+        List<Specification<TripReadModel>> predicates = new ArrayList<>();
+        predicates.add(VoyageSpecifications.hasStatus(Voyage.VoyageStatus.PLANNED));
+        predicates.add(VoyageSpecifications.seatsAtLeast(1));
+        
+        if (cursor != null && !cursor.isBlank()) {
+            TripCursor position = TripCursor.decode(cursor);
+            predicates.add(VoyageSpecifications.afterCursor(position.getDepartureTime(), position.getId()));
+        }
+        
+        int size = boundedPageSize(pageSize);
+        List<TripReadModel> trips = findTripPage(Specification.allOf(predicates), size);
+        return toTripPage(toTripRowPage(trips, size));
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public List<TripResponse> getUpcomingTrips(Long userId) {
+        // Get trips where user is driver or has confirmed bookings
+        List<TripReadModel> trips = tripReadModelRepository.findByDriverIdAndStatus(userId, Voyage.VoyageStatus.PLANNED);
+        trips.addAll(tripReadModelRepository.findByPassagerId(userId, Voyage.VoyageStatus.PLANNED,
+            Reservation.ReservationStatus.CONFIRMED));
+        
+        return tripReadModelProjector.toResponses(trips);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
     public List<TripResponse> getCompletedTrips(Long userId) {
         // Similar logic for completed trips
-        List<Voyage> driverTrips = voyageRepository.findByConducteurIdAndStatus(userId, Voyage.VoyageStatus.COMPLETED);
-        List<Reservation> passengerBookings = reservationRepository.findByPassagerIdAndStatus(userId, Reservation.ReservationStatus.COMPLETED);
+        List<TripReadModel> trips = tripReadModelRepository.findByDriverIdAndStatus(userId, Voyage.VoyageStatus.COMPLETED);
+        trips.addAll(tripReadModelRepository.findByPassagerId(userId, Voyage.VoyageStatus.COMPLETED,
+            Reservation.ReservationStatus.COMPLETED));
         
-        List<Long> tripIds = passengerBookings.stream()
-            .map(Reservation::getVoyageId)
-            .collect(Collectors.toList());
+        return tripReadModelProjector.toResponses(trips);
+    }
+    
+    // Helper methods
+    
+    /**
+     * Give seats freed in this transaction back to the trip, offering them to
+     * its waitlist first. Waiting passengers become PENDING bookings in FIFO
+     * order until the one at the head no longer fits; the seats they take from
+     * the freed ones never go back on sale, and whatever is left is released.
+     * Returns the trip as it stands afterwards.
+     */
+    private Voyage returnSeats(Voyage trip, int freedSeats) {
+        int freed = freedSeats;
+        if (trip.getStatus() == Voyage.VoyageStatus.PLANNED) {
+            // Seats that were already free before this release
+            int available = seatLedger.availableSeats(trip);
+            for (TripWaitlist.Waiting waiting : tripWaitlist.waiting(trip.getId())) {
+                int fromFreed = Math.min(freed, waiting.seats());
+                int fromTrip = waiting.seats() - fromFreed;
+                if (fromTrip > available) {
+                    break;
+                }
+                if (!promote(trip, waiting, fromTrip)) {
+                    if (fromTrip > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                freed -= fromFreed;
+                available -= fromTrip;
+            }
+        }
         
-        List<Voyage> passengerTrips = voyageRepository.findAllById(tripIds).stream()
-            .filter(trip -> trip.getStatus() == Voyage.VoyageStatus.COMPLETED)
-            .collect(Collectors.toList());
+        if (freed > 0) {
+            int released = freed;
+            if (seatLedger.isEnabled()) {
+                afterCommit(() -> seatLedger.release(trip, released));
+            } else {
+                voyageRepository.releaseSeats(trip.getId(), released);
+            }
+        }
+        if (seatLedger.isEnabled()) {
+            return trip;
+        }
+        return voyageRepository.findById(trip.getId())
+            .orElseThrow(() -> new RuntimeException("Trip not found"));
+    }
+    
+    /**
+     * Offer the trip's free seats to its waitlist, for seats released while no
+     * entry in the queue could take them.
+     */
+    private void promoteWaiting(Long tripId) {
+        Voyage trip = voyageRepository.findById(tripId).orElse(null);
+        if (trip == null || trip.getStatus() != Voyage.VoyageStatus.PLANNED || !tripWaitlist.hasWaiting(tripId)) {
+            return;
+        }
+        int before = seatLedger.availableSeats(trip);
+        trip = returnSeats(trip, 0);
+        if (seatLedger.availableSeats(trip) != before) {
+            onTripChanged(trip);
+        }
+    }
+    
+    /**
+     * Turn a waiting passenger into a PENDING booking, taking any seats not
+     * covered by the freed ones from the trip. Returns false, changing nothing,
+     * if the entry was already promoted or left, or the trip's seats ran out.
+     */
+    private boolean promote(Voyage trip, TripWaitlist.Waiting waiting, int seatsFromTrip) {
+        // Claim the entry first so two releases on the same trip cannot both promote it
+        if (waitlistEntryRepository.markPromoted(waiting.entryId()) == 0) {
+            return false;
+        }
+        if (seatsFromTrip > 0 && !takeSeats(trip, seatsFromTrip)) {
+            waitlistEntryRepository.returnToWaiting(waiting.entryId());
+            return false;
+        }
         
-        driverTrips.addAll(passengerTrips);
+        Reservation reservation = new Reservation();
+        reservation.setVoyageId(trip.getId());
+        reservation.setPassagerId(waiting.passengerId());
+        reservation.setNumberOfSeats(waiting.seats());
+        reservation.setTotalPrice(trip.getPricePerSeat() * waiting.seats());
+        reservation.setStatus(Reservation.ReservationStatus.PENDING);
+        reservation.setNotes(waiting.notes());
+        reservation = reservationRepository.save(reservation);
+        reservationEventLog.record(reservation, ReservationEvent.EventType.BOOKED);
+        waitlistEntryRepository.linkReservation(waiting.entryId(), reservation.getId());
+        
+        Long tripId = trip.getId();
+        Long reservationId = reservation.getId();
+        LocalDateTime reservedAt = reservation.getReservationDate();
+        afterCommit(() -> {
+            tripWaitlist.remove(tripId, waiting.entryId());
+            seatHoldExpiry.hold(reservationId, reservedAt);
+            notificationService.notifyBookingCreated(trip.getConducteurId(), waiting.passengerId(), reservationId,
+                waiting.seats());
+        });
+        return true;
+    }
+    
+    private boolean takeSeats(Voyage trip, int seats) {
+        if (seatLedger.isEnabled()) {
+            if (voyageRepository.findStatusForShare(trip.getId()) != Voyage.VoyageStatus.PLANNED
+                || !seatLedger.tryReserve(trip, seats)) {
+                return false;
+            }
+            afterRollback(() -> seatLedger.release(trip, seats));
+            return true;
+        }
+        return voyageRepository.reserveSeats(trip.getId(), seats) > 0;
+    }
+    
+    /**
+     * Cancel everyone still waiting on a trip that will not take more bookings.
+     * Returns the passengers who were waiting.
+     */
+    private List<Long> closeWaitlist(Long tripId) {
+        List<Long> passengerIds = waitlistEntryRepository.findWaitingPassengerIdsByVoyageId(tripId);
+        if (!passengerIds.isEmpty()) {
+            waitlistEntryRepository.cancelWaitingByVoyageId(tripId);
+            afterCommit(() -> tripWaitlist.removeTrip(tripId));
+        }
+        return passengerIds;
+    }
+    
+    /**
+     * Bring the trip's read model row up to date in this transaction, and
+     * refresh the in-memory search structures once it commits. Searches that
+     * read the old state before the commit cannot cache it afterwards: the
+     * invalidation records the trip's change, and the cache refuses pages of
+     * searches started before it that hold the trip or that it now matches.
+     */
+    private void onTripChanged(Voyage trip) {
+        onTripChanged(trip, false);
+    }
+    
+    /**
+     * Same as {@link #onTripChanged(Voyage)}; {@code seatsTakenOnly} tells the
+     * search cache that the trip only lost seats, which it handles without a
+     * scan of every entry.
+     */
+    private void onTripChanged(Voyage trip, boolean seatsTakenOnly) {
+        tripReadModelProjector.update(trip);
+        Voyage snapshot = searchSnapshot(trip);
+        afterCommit(() -> {
+            if (snapshot.getStatus() != Voyage.VoyageStatus.PLANNED) {
+                seatLedger.evict(snapshot.getId());
+            }
+            // With the seat ledger on, the voyages row lags behind the in-memory count
+            snapshot.setAvailableSeats(seatLedger.availableSeats(snapshot));
+            tripTimeIndex.update(snapshot);
+            if (snapshot.getStatus() != Voyage.VoyageStatus.PLANNED) {
+                tripCityIndex.remove(snapshot.getId());
+            }
+            if (seatsTakenOnly) {
+                tripSearchCache.invalidateSeatsTaken(snapshot.getId());
+            } else {
+                tripSearchCache.invalidateTrip(snapshot);
+            }
+        });
+    }
+    
+    private void onTripRemoved(Voyage trip) {
+        tripReadModelProjector.remove(trip.getId());
+        Voyage snapshot = searchSnapshot(trip);
+        // A deleted trip can no longer match any search
+        snapshot.setStatus(Voyage.VoyageStatus.CANCELLED);
+        afterCommit(() -> {
+            seatLedger.evict(snapshot.getId());
+            tripTimeIndex.remove(snapshot.getId());
+            tripCityIndex.remove(snapshot.getId());
+            tripSearchCache.invalidateTrip(snapshot);
+        });
+    }
+    
+    /**
+     * Replace the trip's cities, keeping the given route order, and re-index
+     * them once the transaction commits. Unknown ids are ignored.
+     */
+    private void assignCities(Voyage trip, List<Long> villeIds) {
+        Map<Long, Ville> citiesById = villeRepository.findAllById(villeIds).stream()
+            .collect(Collectors.toMap(Ville::getId, Function.identity()));
+        List<Ville> cities = villeIds.stream()
+            .map(citiesById::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        trip.setVilles(cities);
+        voyageRepository.save(trip);
         
-        return driverTrips.stream()
-            .map(this::convertToTripResponse)
+        Long tripId = trip.getId();
+        List<Long> cityIds = cities.stream()
+            .map(Ville::getId)
             .collect(Collectors.toList());
+        afterCommit(() -> tripCityIndex.index(tripId, cityIds));
     }
     
-    // Helper methods
-    private void createGPSPoints(Long tripId, CreateTripRequest request) {
+    private Voyage searchSnapshot(Voyage trip) {
+        Voyage snapshot = new Voyage();
+        snapshot.setId(trip.getId());
+        snapshot.setStatus(trip.getStatus());
+        snapshot.setDepartureTime(trip.getDepartureTime());
+        snapshot.setPricePerSeat(trip.getPricePerSeat());
+        snapshot.setAvailableSeats(trip.getAvailableSeats());
+        snapshot.setConducteurId(trip.getConducteurId());
+        return snapshot;
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+    
+    private void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+    
+    private List<Point_GPS> createGPSPoints(Long tripId, CreateTripRequest request) {
+        List<Point_GPS> points = new ArrayList<>();
+        int sequence = 0;
+        
         // Create start point
         if (request.getDeparturePoint() != null) {
-            Point_GPS startPoint = new Point_GPS();
-            startPoint.setVoyageId(tripId);
-            startPoint.setLatitude(request.getDeparturePoint().getLatitude());
-            startPoint.setLongitude(request.getDeparturePoint().getLongitude());
-            startPoint.setAddress(request.getDeparturePoint().getAddress());
-            startPoint.setPointType(Point_GPS.PointType.START);
-            pointGpsRepository.save(startPoint);
+            points.add(saveGPSPoint(tripId, request.getDeparturePoint(), Point_GPS.PointType.START, sequence++));
+        }
+        
+        // Create intermediate points in route order
+        if (request.getIntermediatePoints() != null) {
+            for (CreateTripRequest.GPSPointRequest point : request.getIntermediatePoints()) {
+                points.add(saveGPSPoint(tripId, point, Point_GPS.PointType.INTERMEDIATE, sequence++));
+            }
         }
         
         // Create end point
         if (request.getArrivalPoint() != null) {
-            Point_GPS endPoint = new Point_GPS();
-            endPoint.setVoyageId(tripId);
-            endPoint.setLatitude(request.getArrivalPoint().getLatitude());
-            endPoint.setLongitude(request.getArrivalPoint().getLongitude());
-            endPoint.setAddress(request.getArrivalPoint().getAddress());
-            endPoint.setPointType(Point_GPS.PointType.END);
-            pointGpsRepository.save(endPoint);
+            points.add(saveGPSPoint(tripId, request.getArrivalPoint(), Point_GPS.PointType.END, sequence));
         }
         
-        // Note: Intermediate points would be handled separately if needed
+        return points;
     }
     
-    private void updateGPSPoints(Long tripId, CreateTripRequest request) {
+    private Point_GPS saveGPSPoint(Long tripId, CreateTripRequest.GPSPointRequest request, Point_GPS.PointType pointType, int sequence) {
+        Point_GPS point = new Point_GPS();
+        point.setVoyageId(tripId);
+        point.setLatitude(request.getLatitude());
+        point.setLongitude(request.getLongitude());
+        point.setAddress(request.getAddress());
+        point.setPointType(pointType);
+        point.setSequenceNumber(sequence);
+        return pointGpsRepository.save(point);
+    }
+    
+    private List<Point_GPS> updateGPSPoints(Long tripId, CreateTripRequest request) {
         // Delete existing points
         List<Point_GPS> existingPoints = pointGpsRepository.findByVoyageId(tripId);
         pointGpsRepository.deleteAll(existingPoints);
         
         // Create new points
-        createGPSPoints(tripId, request);
+        return createGPSPoints(tripId, request);
     }
     
-    private TripResponse convertToTripResponse(Voyage trip) {
-        TripResponse response = new TripResponse();
-        response.setId(trip.getId());
-        response.setDepartureTime(trip.getDepartureTime());
-        response.setArrivalTime(trip.getArrivalTime());
-        response.setPricePerSeat(trip.getPricePerSeat());
-        response.setAvailableSeats(trip.getAvailableSeats());
-        response.setMaxSeats(trip.getMaxSeats());
-        response.setDescription(trip.getDescription());
-        response.setStatus(trip.getStatus());
-        response.setCreatedAt(trip.getCreatedAt());
-        response.setUpdatedAt(trip.getUpdatedAt());
-        
-        // Get driver information
-        User driver = userRepository.findById(trip.getConducteurId()).orElse(null);
-        if (driver instanceof Conducteur) {
-            Conducteur conducteur = (Conducteur) driver;
-            TripResponse.DriverInfo driverInfo = new TripResponse.DriverInfo();
-            driverInfo.setId(conducteur.getId());
-            driverInfo.setUsername(conducteur.getUsername());
-            driverInfo.setFirstName(conducteur.getFirstName());
-            driverInfo.setLastName(conducteur.getLastName());
-            driverInfo.setPhoneNumber(conducteur.getPhoneNumber());
-            driverInfo.setVehicleModel(conducteur.getVehicleModel());
-            driverInfo.setVehicleColor(conducteur.getVehicleColor());
-            driverInfo.setVehiclePlate(conducteur.getVehiclePlate());
-            driverInfo.setRating(conducteur.getRating());
-            driverInfo.setTotalTrips(conducteur.getTotalTrips());
-            driverInfo.setIsVerified(conducteur.getIsVerified());
-            response.setDriver(driverInfo);
-        }
-        
-        // Get GPS points
-        List<Point_GPS> points = pointGpsRepository.findByVoyageId(trip.getId());
-        List<TripResponse.GPSPointInfo> pointInfos = points.stream()
-            .map(point -> {
-                TripResponse.GPSPointInfo info = new TripResponse.GPSPointInfo();
-                info.setId(point.getId());
-                info.setLatitude(point.getLatitude());
-                info.setLongitude(point.getLongitude());
-                info.setAddress(point.getAddress());
-                info.setPointType(point.getPointType().name());
-                return info;
-            })
-            .collect(Collectors.toList());
-        response.setPoints(pointInfos);
-        
-        // Get options
-        if (trip.getOptions() != null) {
-            List<TripResponse.OptionInfo> optionInfos = trip.getOptions().stream()
-                .map(option -> {
-                    TripResponse.OptionInfo info = new TripResponse.OptionInfo();
-                    info.setId(option.getId());
-                    info.setName(option.getName());
-                    info.setDescription(option.getDescription());
-                    info.setPrice(option.getPrice());
-                    return info;
-                })
-                .collect(Collectors.toList());
-            response.setOptions(optionInfos);
-        }
-        
-        // Get cities
-        if (trip.getVilles() != null) {
-            List<TripResponse.CityInfo> cityInfos = trip.getVilles().stream()
-                .map(ville -> {
-                    TripResponse.CityInfo info = new TripResponse.CityInfo();
-                    info.setId(ville.getId());
-                    info.setName(ville.getName());
-                    info.setCodePostal(ville.getCodePostal());
-                    info.setPays(ville.getPays());
-                    return info;
-                })
-                .collect(Collectors.toList());
-            response.setCities(cityInfos);
+    /**
+     * Fetch one keyset page ordered by (departureTime, id). One extra row is
+     * read to know whether a next page exists without issuing a count query.
+     */
+    private List<TripReadModel> findTripPage(Specification<TripReadModel> spec, int pageSize) {
+        return tripReadModelRepository.findBy(spec, query -> query
+            .sortBy(KEYSET_SORT)
+            .limit(pageSize + 1)
+            .all());
+    }
+    
+    private int boundedPageSize(Integer pageSize) {
+        if (pageSize == null || pageSize < 1) {
+            return DEFAULT_PAGE_SIZE;
         }
-        
-        return response;
+        return Math.min(pageSize, MAX_PAGE_SIZE);
     }
     
-    private BookingResponse convertToBookingResponse(Reservation reservation) {
-        BookingResponse response = new BookingResponse();
-        response.setId(reservation.getId());
-        response.setNumberOfSeats(reservation.getNumberOfSeats());
-        response.setTotalPrice(reservation.getTotalPrice());
-        response.setStatus(reservation.getStatus());
-        response.setReservationDate(reservation.getReservationDate());
-        response.setNotes(reservation.getNotes());
-        
-        // Get trip information
-        Voyage trip = voyageRepository.findById(reservation.getVoyageId()).orElse(null);
-        if (trip != null) {
-            BookingResponse.TripInfo tripInfo = new BookingResponse.TripInfo();
-            tripInfo.setId(trip.getId());
-            tripInfo.setDepartureTime(trip.getDepartureTime());
-            tripInfo.setArrivalTime(trip.getArrivalTime());
-            tripInfo.setPricePerSeat(trip.getPricePerSeat());
-            tripInfo.setDescription(trip.getDescription());
-            tripInfo.setStatus(trip.getStatus().name());
-            
-            // Get driver information
-            User driver = userRepository.findById(trip.getConducteurId()).orElse(null);
-            if (driver instanceof Conducteur) {
-                Conducteur conducteur = (Conducteur) driver;
-                tripInfo.setDriverName(conducteur.getFirstName() + " " + conducteur.getLastName());
-                tripInfo.setVehicleModel(conducteur.getVehicleModel());
-                tripInfo.setVehicleColor(conducteur.getVehicleColor());
-                tripInfo.setVehiclePlate(conducteur.getVehiclePlate());
-            }
-            
-            response.setTrip(tripInfo);
+    /**
+     * Trim a pageSize + 1 fetch to the page and derive its next cursor.
+     */
+    private TripRowPage toTripRowPage(List<TripReadModel> trips, int pageSize) {
+        boolean hasNext = trips.size() > pageSize;
+        if (hasNext) {
+            trips = trips.subList(0, pageSize);
         }
         
-        // Get passenger information
-        User passenger = userRepository.findById(reservation.getPassagerId()).orElse(null);
-        if (passenger != null) {
-            BookingResponse.PassengerInfo passengerInfo = new BookingResponse.PassengerInfo();
-            passengerInfo.setId(passenger.getId());
-            passengerInfo.setUsername(passenger.getUsername());
-            passengerInfo.setFirstName(passenger.getFirstName());
-            passengerInfo.setLastName(passenger.getLastName());
-            passengerInfo.setPhoneNumber(passenger.getPhoneNumber());
-            response.setPassenger(passengerInfo);
+        String nextCursor = null;
+        if (hasNext) {
+            TripReadModel last = trips.get(trips.size() - 1);
+            nextCursor = new TripCursor(last.getDepartureTime(), last.getId()).encode();
         }
-        
-        return response;
+        return new TripRowPage(trips, nextCursor, hasNext);
+    }
+    
+    private TripPage toTripPage(TripRowPage page) {
+        List<TripResponse> content = tripReadModelProjector.toResponses(page.trips());
+        return new TripPage(content, page.nextCursor(), page.hasNext());
+    }
+    
+    private TripResponse convertToTripResponse(Voyage trip) {
+        return tripResponseAssembler.toResponse(trip);
+    }
+    
+    private BookingResponse convertToBookingResponse(Reservation reservation) {
+        return bookingResponseAssembler.toResponse(reservation);
+    }
+    
+    private WaitlistResponse convertToWaitlistResponse(WaitlistEntry entry) {
+        Long position = null;
+        if (entry.getStatus() == WaitlistEntry.WaitlistStatus.WAITING) {
+            position = waitlistEntryRepository.countByVoyageIdAndStatusAndIdLessThan(entry.getVoyageId(),
+                WaitlistEntry.WaitlistStatus.WAITING, entry.getId()) + 1;
+        }
+        return new WaitlistResponse(entry.getId(), entry.getVoyageId(), entry.getPassagerId(), entry.getNumberOfSeats(),
+            entry.getNotes(), entry.getStatus(), position, entry.getReservationId(), entry.getCreatedAt());
     }
     
     // Trip Creation Enhancement Methods
@@ -734,33 +1500,9 @@ public class TripServiceImpl implements TripService {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            // Find cities in database by name (case-insensitive)
-            List<Ville> departureCities = villeRepository.findByNameContainingIgnoreCase(departure.trim());
-            List<Ville> arrivalCities = villeRepository.findByNameContainingIgnoreCase(arrival.trim());
-            
-            Ville departureCity = null;
-            Ville arrivalCity = null;
-            
-            // Find exact match or best match
-            for (Ville city : departureCities) {
-                if (city.getName().equalsIgnoreCase(departure.trim())) {
-                    departureCity = city;
-                    break;
-                }
-            }
-            if (departureCity == null && !departureCities.isEmpty()) {
-                departureCity = departureCities.get(0); // Take first match
-            }
-            
-            for (Ville city : arrivalCities) {
-                if (city.getName().equalsIgnoreCase(arrival.trim())) {
-                    arrivalCity = city;
-                    break;
-                }
-            }
-            if (arrivalCity == null && !arrivalCities.isEmpty()) {
-                arrivalCity = arrivalCities.get(0); // Take first match
-            }
+            // Resolve names through the in-memory trie, ignoring case and accents
+            Ville departureCity = cityNameTrie.findBest(normalizeCityName(departure));
+            Ville arrivalCity = cityNameTrie.findBest(normalizeCityName(arrival));
             
             if (departureCity != null && arrivalCity != null && 
                 departureCity.getLatitude() != null && departureCity.getLongitude() != null &&
@@ -803,32 +1545,11 @@ public class TripServiceImpl implements TripService {
     }
     
     private double calculateHaversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Radius of the earth in km
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        double distance = R * c; // convert to kilometers
-        
-        return distance;
+        return GeoUtils.haversineKm(lat1, lon1, lat2, lon2);
     }
     
     private String normalizeCityName(String cityName) {
-        if (cityName == null) return "";
-        return cityName.toLowerCase()
-            .replace("é", "e")
-            .replace("è", "e")
-            .replace("ê", "e")
-            .replace("à", "a")
-            .replace("â", "a")
-            .replace("ô", "o")
-            .replace("ù", "u")
-            .replace("û", "u")
-            .replace("ç", "c")
-            .trim();
+        return CityNameTrie.normalize(cityName);
     }
     
     private double getDefaultDistanceForCity(String departure, String arrival) {
@@ -876,4 +1597,10 @@ public class TripServiceImpl implements TripService {
             return String.format("%dm", mins);
         }
     }
+    
+    /**
+     * A page of read model rows before conversion to responses.
+     */
+    private record TripRowPage(List<TripReadModel> trips, String nextCursor, boolean hasNext) {
+    }
 }
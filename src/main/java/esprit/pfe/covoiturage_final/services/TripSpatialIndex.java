@@ -0,0 +1,320 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Point_GPS;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.Point_GPSRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory segment index over the routes of PLANNED trips.
+ *
+ * Each trip's route is the polyline START -> intermediate points -> END. Every
+ * segment's bounding box is precomputed and registered in the fixed-size
+ * lat/lon grid cells it overlaps. A corridor query only visits the cells
+ * around the passenger's pickup and drop-off points, so its cost depends on
+ * local route density rather than on the number of trips or segments.
+ */
+@Component
+public class TripSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripSpatialIndex.class);
+
+    // ~22 km of latitude: long intercity segments stay within a few dozen cells
+    private static final double CELL_SIZE_DEG = 0.2;
+
+    private static final Comparator<Point_GPS> ROUTE_ORDER = Comparator
+        .comparingInt((Point_GPS point) -> routeRank(point.getPointType()))
+        .thenComparing(Point_GPS::getSequenceNumber, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(Point_GPS::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private Point_GPSRepository pointGpsRepository;
+
+    private final Map<Long, Route> routes = new ConcurrentHashMap<>();
+    private final Map<Long, Set<SegmentRef>> cells = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        routes.clear();
+        cells.clear();
+
+        List<Long> plannedTripIds = voyageRepository.findByStatus(Voyage.VoyageStatus.PLANNED).stream()
+            .map(Voyage::getId)
+            .collect(Collectors.toList());
+        if (plannedTripIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<Point_GPS>> pointsByTrip = pointGpsRepository.findByVoyageIdIn(plannedTripIds).stream()
+            .collect(Collectors.groupingBy(Point_GPS::getVoyageId));
+        pointsByTrip.forEach(this::index);
+
+        logger.info("Trip spatial index built with {} routes", routes.size());
+    }
+
+    /**
+     * Index (or re-index) a trip from its persisted GPS points. Trips without
+     * both a START and an END point are removed from the index.
+     */
+    public void index(Long tripId, List<Point_GPS> points) {
+        remove(tripId);
+
+        List<Point_GPS> ordered = points.stream()
+            .sorted(ROUTE_ORDER)
+            .collect(Collectors.toList());
+        boolean hasStart = ordered.stream().anyMatch(p -> p.getPointType() == Point_GPS.PointType.START);
+        boolean hasEnd = ordered.stream().anyMatch(p -> p.getPointType() == Point_GPS.PointType.END);
+        if (!hasStart || !hasEnd) {
+            return;
+        }
+
+        Route route = new Route(ordered);
+        routes.put(tripId, route);
+        for (int segment = 0; segment < route.segmentCount(); segment++) {
+            SegmentRef ref = new SegmentRef(tripId, segment);
+            for (long key : route.cellKeys(segment)) {
+                cells.compute(key, (k, set) -> {
+                    if (set == null) {
+                        set = ConcurrentHashMap.newKeySet();
+                    }
+                    set.add(ref);
+                    return set;
+                });
+            }
+        }
+    }
+
+    public void remove(Long tripId) {
+        Route previous = routes.remove(tripId);
+        if (previous == null) {
+            return;
+        }
+        for (int segment = 0; segment < previous.segmentCount(); segment++) {
+            SegmentRef ref = new SegmentRef(tripId, segment);
+            for (long key : previous.cellKeys(segment)) {
+                cells.computeIfPresent(key, (k, set) -> {
+                    set.remove(ref);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+    }
+
+    /**
+     * Trips whose route passes within radiusKm of the pickup point and later
+     * within radiusKm of the drop-off point.
+     */
+    public Set<Long> findTrips(double pickupLat, double pickupLon, double dropoffLat, double dropoffLon, double radiusKm) {
+        Map<Long, Double> pickups = nearbyPositions(pickupLat, pickupLon, radiusKm, true);
+        if (pickups.isEmpty()) {
+            return new HashSet<>();
+        }
+        Map<Long, Double> dropoffs = nearbyPositions(dropoffLat, dropoffLon, radiusKm, false);
+
+        Set<Long> result = new HashSet<>();
+        pickups.forEach((tripId, pickupPosition) -> {
+            Double dropoffPosition = dropoffs.get(tripId);
+            if (dropoffPosition != null && pickupPosition < dropoffPosition) {
+                result.add(tripId);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Same check as {@link #findTrips} for a single trip.
+     */
+    public boolean matches(Long tripId, double pickupLat, double pickupLon, double dropoffLat, double dropoffLon, double radiusKm) {
+        Route route = routes.get(tripId);
+        if (route == null) {
+            return false;
+        }
+        Double pickup = null;
+        Double dropoff = null;
+        for (int segment = 0; segment < route.segmentCount(); segment++) {
+            Double p = route.positionNear(segment, pickupLat, pickupLon, radiusKm);
+            if (p != null && (pickup == null || p < pickup)) {
+                pickup = p;
+            }
+            Double d = route.positionNear(segment, dropoffLat, dropoffLon, radiusKm);
+            if (d != null && (dropoff == null || d > dropoff)) {
+                dropoff = d;
+            }
+        }
+        return pickup != null && dropoff != null && pickup < dropoff;
+    }
+
+    /**
+     * Shortest distance in km from the point to the trip's route, or
+     * {@code Double.MAX_VALUE} if the trip is not indexed.
+     */
+    public double distanceToRoute(Long tripId, double lat, double lon) {
+        Route route = routes.get(tripId);
+        return route != null ? route.distanceKm(lat, lon) : Double.MAX_VALUE;
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    /**
+     * For every trip passing within radiusKm of the point, its position along the
+     * route (segment index + fraction). Keeps the earliest position for pickups
+     * and the latest one for drop-offs.
+     */
+    private Map<Long, Double> nearbyPositions(double lat, double lon, double radiusKm, boolean earliest) {
+        double latDelta = radiusKm / GeoUtils.KM_PER_DEGREE_LAT;
+        double lonDelta = GeoUtils.lonDegreesForKm(lat, radiusKm);
+
+        Set<SegmentRef> candidates = new HashSet<>();
+        for (int i = cellIndex(lat - latDelta); i <= cellIndex(lat + latDelta); i++) {
+            for (int j = cellIndex(lon - lonDelta); j <= cellIndex(lon + lonDelta); j++) {
+                Set<SegmentRef> cell = cells.get(cellKey(i, j));
+                if (cell != null) {
+                    candidates.addAll(cell);
+                }
+            }
+        }
+
+        Map<Long, Double> positions = new HashMap<>();
+        for (SegmentRef ref : candidates) {
+            Route route = routes.get(ref.tripId());
+            if (route == null || ref.segment() >= route.segmentCount()) {
+                continue;
+            }
+            Double position = route.positionNear(ref.segment(), lat, lon, radiusKm);
+            if (position != null) {
+                positions.merge(ref.tripId(), position, (a, b) -> earliest ? Math.min(a, b) : Math.max(a, b));
+            }
+        }
+        return positions;
+    }
+
+    private static int routeRank(Point_GPS.PointType type) {
+        if (type == Point_GPS.PointType.START) {
+            return 0;
+        }
+        return type == Point_GPS.PointType.END ? 2 : 1;
+    }
+
+    private static int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE_DEG);
+    }
+
+    private static long cellKey(int latIndex, int lonIndex) {
+        return ((long) latIndex << 32) | (lonIndex & 0xffffffffL);
+    }
+
+    private record SegmentRef(Long tripId, int segment) {
+    }
+
+    /**
+     * Ordered route polyline with precomputed per-segment bounding boxes.
+     */
+    private static final class Route {
+        private final double[] lats;
+        private final double[] lons;
+        // per segment: {minLat, maxLat, minLon, maxLon}
+        private final double[][] boxes;
+
+        private Route(List<Point_GPS> points) {
+            lats = new double[points.size()];
+            lons = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                lats[i] = points.get(i).getLatitude();
+                lons[i] = points.get(i).getLongitude();
+            }
+            boxes = new double[Math.max(points.size() - 1, 0)][];
+            for (int s = 0; s < boxes.length; s++) {
+                boxes[s] = new double[] {
+                    Math.min(lats[s], lats[s + 1]), Math.max(lats[s], lats[s + 1]),
+                    Math.min(lons[s], lons[s + 1]), Math.max(lons[s], lons[s + 1])
+                };
+            }
+        }
+
+        private int segmentCount() {
+            return boxes.length;
+        }
+
+        private List<Long> cellKeys(int segment) {
+            double[] box = boxes[segment];
+            List<Long> keys = new ArrayList<>();
+            for (int i = cellIndex(box[0]); i <= cellIndex(box[1]); i++) {
+                for (int j = cellIndex(box[2]); j <= cellIndex(box[3]); j++) {
+                    keys.add(cellKey(i, j));
+                }
+            }
+            return keys;
+        }
+
+        /**
+         * Position (segment + fraction) of the closest point of the segment to
+         * (lat, lon) if it is within radiusKm, otherwise null.
+         */
+        private Double positionNear(int segment, double lat, double lon, double radiusKm) {
+            double[] box = boxes[segment];
+            double latDelta = radiusKm / GeoUtils.KM_PER_DEGREE_LAT;
+            double lonDelta = GeoUtils.lonDegreesForKm(lat, radiusKm);
+            if (lat < box[0] - latDelta || lat > box[1] + latDelta
+                || lon < box[2] - lonDelta || lon > box[3] + lonDelta) {
+                return null;
+            }
+
+            double[] projection = project(segment, lat, lon);
+            if (projection[0] > radiusKm) {
+                return null;
+            }
+            return segment + projection[1];
+        }
+
+        private double distanceKm(double lat, double lon) {
+            double min = Double.MAX_VALUE;
+            for (int segment = 0; segment < segmentCount(); segment++) {
+                min = Math.min(min, project(segment, lat, lon)[0]);
+            }
+            return min;
+        }
+
+        /**
+         * {distance in km, fraction along the segment} of the closest point of
+         * the segment to (lat, lon).
+         */
+        private double[] project(int segment, double lat, double lon) {
+            // Project onto a local plane (km) centred on the query point
+            double kmPerLon = GeoUtils.KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(lat));
+            double ax = (lons[segment] - lon) * kmPerLon;
+            double ay = (lats[segment] - lat) * GeoUtils.KM_PER_DEGREE_LAT;
+            double bx = (lons[segment + 1] - lon) * kmPerLon;
+            double by = (lats[segment + 1] - lat) * GeoUtils.KM_PER_DEGREE_LAT;
+
+            double dx = bx - ax;
+            double dy = by - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+
+            double px = ax + t * dx;
+            double py = ay + t * dy;
+            return new double[] {Math.sqrt(px * px + py * py), t};
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.dto.TripCursor;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory departure-time index of PLANNED trips, partitioned by day.
+ *
+ * Each day holds a skip list of lightweight {@link Slot}s sorted by
+ * (departure epoch-minute, departureTime, id), which is the keyset order used
+ * for search paging. A search walks the days of its window in order, scanning a
+ * few of them at a time in parallel on a dedicated ForkJoin pool, and stops as
+ * soon as it has enough matches.
+ */
+@Component
+public class TripTimeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripTimeIndex.class);
+
+    // Days scanned in parallel at a time; the walk stops at the first batch that fills the page
+    private static final int LOOKAHEAD_DAYS = 7;
+
+    private static final Comparator<Slot> SLOT_ORDER = Comparator
+        .comparingLong(Slot::getDepartureMinute)
+        .thenComparing(Slot::getDepartureTime)
+        .thenComparingLong(Slot::getId);
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Value("${app.tripTimeIndexEnabled:true}")
+    private boolean enabled;
+
+    private final ForkJoinPool searchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // epoch day -> slots departing that day
+    private final ConcurrentSkipListMap<Long, NavigableSet<Slot>> days = new ConcurrentSkipListMap<>();
+
+    private final Map<Long, Slot> slotsByTrip = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        ready = false;
+        days.clear();
+        slotsByTrip.clear();
+
+        for (Voyage trip : voyageRepository.findByStatus(Voyage.VoyageStatus.PLANNED)) {
+            update(trip);
+        }
+
+        ready = true;
+        logger.info("Trip time index built with {} trips over {} days", slotsByTrip.size(), days.size());
+    }
+
+    /**
+     * Whether searches can be served from the index.
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Insert, move or drop a trip's slot to match its current state.
+     */
+    public void update(Voyage trip) {
+        boolean listed = trip.getStatus() == Voyage.VoyageStatus.PLANNED && trip.getDepartureTime() != null;
+        // The slot is swapped inside compute() so concurrent updates of one trip cannot interleave
+        slotsByTrip.compute(trip.getId(), (tripId, previous) -> {
+            unlink(previous);
+            if (!listed) {
+                return null;
+            }
+            Slot slot = new Slot(tripId, trip.getConducteurId(), trip.getDepartureTime(),
+                trip.getPricePerSeat(), trip.getAvailableSeats());
+            days.computeIfAbsent(slot.getEpochDay(), day -> new ConcurrentSkipListSet<>(SLOT_ORDER)).add(slot);
+            return slot;
+        });
+    }
+
+    public void remove(Long tripId) {
+        slotsByTrip.computeIfPresent(tripId, (id, previous) -> {
+            unlink(previous);
+            return null;
+        });
+    }
+
+    /**
+     * Trip ids departing strictly after {@code from} (and before {@code to} if
+     * given), after the cursor, accepted by the filter, in keyset order.
+     * At most {@code limit} ids are returned.
+     */
+    public List<Long> search(LocalDateTime from, LocalDateTime to, TripCursor cursor, Predicate<Slot> filter, int limit) {
+        return searchSlots(from, to, cursor, filter, limit).stream()
+            .map(Slot::getId)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Same as {@link #search} but returns the matching slots.
+     */
+    public List<Slot> searchSlots(LocalDateTime from, LocalDateTime to, TripCursor cursor, Predicate<Slot> filter, int limit) {
+        LocalDateTime lowerBound = from;
+        if (cursor != null && cursor.getDepartureTime().isAfter(lowerBound)) {
+            lowerBound = cursor.getDepartureTime();
+        }
+        LocalDateTime effectiveFrom = lowerBound;
+        if (to != null && !effectiveFrom.isBefore(to)) {
+            return new ArrayList<>();
+        }
+
+        Long firstDay = epochDay(effectiveFrom);
+        NavigableMap<Long, NavigableSet<Slot>> window = to != null
+            ? days.subMap(firstDay, true, epochDay(to), true)
+            : days.tailMap(firstDay, true);
+        if (window.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Predicate<Slot> accepts = slot -> slot.getDepartureTime().isAfter(from)
+            && (to == null || slot.getDepartureTime().isBefore(to))
+            && (cursor == null || isAfterCursor(slot, cursor))
+            && filter.test(slot);
+
+        // Days are walked in order, a batch of LOOKAHEAD_DAYS at a time, and the walk
+        // stops once the page is full, so an open-ended window never visits every future day
+        List<Slot> result = new ArrayList<>(limit);
+        Iterator<NavigableSet<Slot>> remaining = window.values().iterator();
+        while (remaining.hasNext() && result.size() < limit) {
+            List<NavigableSet<Slot>> batch = new ArrayList<>(LOOKAHEAD_DAYS);
+            while (remaining.hasNext() && batch.size() < LOOKAHEAD_DAYS) {
+                batch.add(remaining.next());
+            }
+            int wanted = limit - result.size();
+            // Each day yields at most `wanted` matches; days are disjoint so the merge is a concatenation
+            List<List<Slot>> perDay = batch.size() == 1
+                ? List.of(scanDay(batch.get(0), effectiveFrom, accepts, wanted))
+                : searchPool.submit(() -> batch.parallelStream()
+                    .map(partition -> scanDay(partition, effectiveFrom, accepts, wanted))
+                    .collect(Collectors.toList())
+                ).join();
+            for (List<Slot> dayResult : perDay) {
+                for (Slot slot : dayResult) {
+                    if (result.size() >= limit) {
+                        return result;
+                    }
+                    result.add(slot);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return slotsByTrip.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchPool.shutdown();
+    }
+
+    private void unlink(Slot slot) {
+        if (slot != null) {
+            NavigableSet<Slot> day = days.get(slot.getEpochDay());
+            if (day != null) {
+                day.remove(slot);
+            }
+        }
+    }
+
+    private static List<Slot> scanDay(NavigableSet<Slot> partition, LocalDateTime from, Predicate<Slot> accepts, int limit) {
+        // Skip to the first minute of the window instead of scanning the whole day
+        Slot probe = new Slot(Long.MIN_VALUE, null, from.withSecond(0).withNano(0), 0.0, 0);
+        List<Slot> slots = new ArrayList<>();
+        for (Slot slot : partition.tailSet(probe, true)) {
+            if (accepts.test(slot)) {
+                slots.add(slot);
+                if (slots.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return slots;
+    }
+
+    private static boolean isAfterCursor(Slot slot, TripCursor cursor) {
+        int cmp = slot.getDepartureTime().compareTo(cursor.getDepartureTime());
+        return cmp > 0 || (cmp == 0 && slot.getId() > cursor.getId());
+    }
+
+    private static long epochDay(LocalDateTime time) {
+        return time.toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Search-relevant snapshot of a PLANNED trip.
+     */
+    public static final class Slot {
+        private final long id;
+        private final Long driverId;
+        private final LocalDateTime departureTime;
+        private final long departureMinute;
+        private final double pricePerSeat;
+        private final int availableSeats;
+
+        private Slot(long id, Long driverId, LocalDateTime departureTime, double pricePerSeat, int availableSeats) {
+            this.id = id;
+            this.driverId = driverId;
+            this.departureTime = departureTime;
+            this.departureMinute = departureTime.toEpochSecond(ZoneOffset.UTC) / 60;
+            this.pricePerSeat = pricePerSeat;
+            this.availableSeats = availableSeats;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Long getDriverId() {
+            return driverId;
+        }
+
+        public LocalDateTime getDepartureTime() {
+            return departureTime;
+        }
+
+        public long getDepartureMinute() {
+            return departureMinute;
+        }
+
+        public double getPricePerSeat() {
+            return pricePerSeat;
+        }
+
+        public int getAvailableSeats() {
+            return availableSeats;
+        }
+
+        private long getEpochDay() {
+            return departureTime.toLocalDate().toEpochDay();
+        }
+    }
+}
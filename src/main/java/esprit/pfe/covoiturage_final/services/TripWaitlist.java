@@ -0,0 +1,93 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.WaitlistEntry;
+import esprit.pfe.covoiturage_final.repositories.WaitlistEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * In-memory FIFO queues over the WAITING rows of waitlist_entries, one per trip.
+ *
+ * Promotion reads a trip's queue from its head, so handing freed seats to the
+ * next passengers costs the same however long the waitlist is and never scans
+ * the table. The table stays the source of truth: entries are claimed with a
+ * conditional UPDATE, and the queues only change once the transaction that
+ * added, promoted or cancelled an entry has committed. They are rebuilt from
+ * the table at startup.
+ */
+@Component
+public class TripWaitlist {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripWaitlist.class);
+
+    @Autowired
+    private WaitlistEntryRepository waitlistEntryRepository;
+
+    private final Map<Long, ConcurrentLinkedDeque<Waiting>> queues = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        queues.clear();
+        int size = 0;
+        for (WaitlistEntry entry : waitlistEntryRepository.findByStatusOrderByIdAsc(WaitlistEntry.WaitlistStatus.WAITING)) {
+            add(entry);
+            size++;
+        }
+        logger.info("Trip waitlist loaded {} waiting passengers on {} trips", size, queues.size());
+    }
+
+    public void add(WaitlistEntry entry) {
+        queues.computeIfAbsent(entry.getVoyageId(), id -> new ConcurrentLinkedDeque<>())
+            .addLast(new Waiting(entry.getId(), entry.getPassagerId(), entry.getNumberOfSeats(), entry.getNotes()));
+    }
+
+    /**
+     * Waiting passengers of the trip, oldest first. The iteration is weakly
+     * consistent, so callers can stop at the first entry that does not fit.
+     */
+    public Iterable<Waiting> waiting(Long tripId) {
+        ConcurrentLinkedDeque<Waiting> queue = queues.get(tripId);
+        return queue != null ? queue : List.of();
+    }
+
+    public boolean hasWaiting(Long tripId) {
+        ConcurrentLinkedDeque<Waiting> queue = queues.get(tripId);
+        return queue != null && !queue.isEmpty();
+    }
+
+    public void remove(Long tripId, Long entryId) {
+        queues.computeIfPresent(tripId, (id, queue) -> {
+            // Promoted entries are almost always at the head, so stop at the first match
+            Iterator<Waiting> it = queue.iterator();
+            while (it.hasNext()) {
+                if (it.next().entryId().equals(entryId)) {
+                    it.remove();
+                    break;
+                }
+            }
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    public void removeTrip(Long tripId) {
+        queues.remove(tripId);
+    }
+
+    public int size(Long tripId) {
+        ConcurrentLinkedDeque<Waiting> queue = queues.get(tripId);
+        return queue != null ? queue.size() : 0;
+    }
+
+    public record Waiting(Long entryId, Long passengerId, int seats, String notes) {
+    }
+}
@@ -3,6 +3,7 @@ package esprit.pfe.covoiturage_final.services;
 import esprit.pfe.covoiturage_final.dto.SignInRequest;
 import esprit.pfe.covoiturage_final.dto.SignUpRequest;
 import esprit.pfe.covoiturage_final.dto.AuthResponse;
+import esprit.pfe.covoiturage_final.dto.UserSummary;
 import esprit.pfe.covoiturage_final.entities.User;
 import esprit.pfe.covoiturage_final.entities.UserRole;
 
@@ -13,8 +14,8 @@ public interface UserService {
     AuthResponse signIn(SignInRequest signInRequest);
     User getUserById(Long id);
     User getUserByUsername(String username);
-    List<User> getAllUsers();
-    List<User> getUsersByRole(UserRole role);
+    List<UserSummary> getAllUsers();
+    List<UserSummary> getUsersByRole(UserRole role);
     User updateUser(Long id, User userDetails);
     void deleteUser(Long id);
     boolean existsByUsername(String username);
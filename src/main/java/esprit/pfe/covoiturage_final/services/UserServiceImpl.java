@@ -3,6 +3,7 @@ package esprit.pfe.covoiturage_final.services;
 import esprit.pfe.covoiturage_final.dto.AuthResponse;
 import esprit.pfe.covoiturage_final.dto.SignInRequest;
 import esprit.pfe.covoiturage_final.dto.SignUpRequest;
+import esprit.pfe.covoiturage_final.dto.UserSummary;
 import esprit.pfe.covoiturage_final.entities.*;
 import esprit.pfe.covoiturage_final.repositories.ConducteurRepository;
 import esprit.pfe.covoiturage_final.repositories.PassagerRepository;
@@ -15,6 +16,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -152,13 +154,15 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<UserSummary> getAllUsers() {
+        return userRepository.findAllSummaries();
     }
 
     @Override
-    public List<User> getUsersByRole(UserRole role) {
-        return userRepository.findByRole(role);
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUsersByRole(UserRole role) {
+        return userRepository.findSummariesByRole(role);
     }
 
     @Override
@@ -0,0 +1,23 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.entities.Ville;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * JPA listener keeping the in-memory city name trie in sync with the villes table.
+ */
+public class VilleChangeListener {
+
+    @Autowired
+    private CityNameTrie cityNameTrie;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Ville city) {
+        cityNameTrie.refresh();
+    }
+}
@@ -0,0 +1,83 @@
+package esprit.pfe.covoiturage_final.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the voyage_villes rows written before the join table had a position
+ * column.
+ *
+ * ddl-auto adds the column as NULL on every existing row, and Hibernate refuses
+ * to load a list with a null index, so this runs as an ApplicationRunner: after
+ * the schema update but before the ApplicationReadyEvent listeners that build
+ * the city index and the trip read model. Legacy rows carry no order of their
+ * own, so each trip's cities are numbered by distance from its START point,
+ * which is their route order whenever they lie along the way. Cities without
+ * coordinates keep the order they were read in, after the others.
+ */
+@Component
+public class VoyageCityPositionMigration implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoyageCityPositionMigration.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Long> tripIds = jdbcTemplate.queryForList(
+            "SELECT DISTINCT voyage_id FROM voyage_villes WHERE position IS NULL", Long.class);
+        if (tripIds.isEmpty()) {
+            return;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (Long tripId : tripIds) {
+            transaction.executeWithoutResult(status -> renumber(tripId));
+        }
+        logger.info("Numbered the cities of {} trips in voyage_villes", tripIds.size());
+    }
+
+    private void renumber(Long tripId) {
+        List<Map<String, Object>> start = jdbcTemplate.queryForList(
+            "SELECT latitude, longitude FROM point_gps WHERE voyage_id = ? AND point_type = 'START'", tripId);
+        List<CityRow> cities = jdbcTemplate.query(
+            "SELECT vv.ville_id, v.latitude, v.longitude FROM voyage_villes vv JOIN villes v ON v.id = vv.ville_id " +
+            "WHERE vv.voyage_id = ?",
+            (rs, rowNum) -> new CityRow(rs.getLong(1), rs.getObject(2, Double.class),
+                rs.getObject(3, Double.class)),
+            tripId);
+
+        if (!start.isEmpty()) {
+            double startLat = ((Number) start.get(0).get("latitude")).doubleValue();
+            double startLon = ((Number) start.get(0).get("longitude")).doubleValue();
+            // Stable sort, so cities without coordinates keep their relative order at the end
+            cities.sort(Comparator.comparingDouble(city -> city.latitude() == null || city.longitude() == null
+                ? Double.MAX_VALUE
+                : GeoUtils.haversineKm(startLat, startLon, city.latitude(), city.longitude())));
+        }
+
+        List<Object[]> batch = new ArrayList<>(cities.size());
+        for (int i = 0; i < cities.size(); i++) {
+            batch.add(new Object[] {i, tripId, cities.get(i).villeId()});
+        }
+        jdbcTemplate.batchUpdate("UPDATE voyage_villes SET position = ? WHERE voyage_id = ? AND ville_id = ?", batch);
+    }
+
+    private record CityRow(long villeId, Double latitude, Double longitude) {
+    }
+}
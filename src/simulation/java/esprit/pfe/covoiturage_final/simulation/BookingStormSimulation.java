@@ -0,0 +1,342 @@
+package esprit.pfe.covoiturage_final.simulation;
+
+import esprit.pfe.covoiturage_final.CovoiturageFinalApplication;
+import esprit.pfe.covoiturage_final.dto.BookingRequest;
+import esprit.pfe.covoiturage_final.dto.BookingResponse;
+import esprit.pfe.covoiturage_final.dto.CreateTripRequest;
+import esprit.pfe.covoiturage_final.dto.SearchTripRequest;
+import esprit.pfe.covoiturage_final.dto.TripResponse;
+import esprit.pfe.covoiturage_final.entities.Conducteur;
+import esprit.pfe.covoiturage_final.entities.Passager;
+import esprit.pfe.covoiturage_final.entities.TripReadModel;
+import esprit.pfe.covoiturage_final.entities.User;
+import esprit.pfe.covoiturage_final.entities.Ville;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.ReservationRepository;
+import esprit.pfe.covoiturage_final.repositories.TripReadModelRepository;
+import esprit.pfe.covoiturage_final.repositories.UserRepository;
+import esprit.pfe.covoiturage_final.repositories.VilleRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import esprit.pfe.covoiturage_final.services.ReservationEventLog;
+import esprit.pfe.covoiturage_final.services.SeatLedger;
+import esprit.pfe.covoiturage_final.services.TripService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reproduces a booking storm against the service layer on an embedded H2
+ * database, run with {@code ./gradlew simulateLoad}.
+ *
+ * The database is seeded from data.sql plus synthetic drivers, passengers and
+ * trips. Thousands of virtual users, one virtual thread each, then search,
+ * book, cancel and confirm for a fixed duration, with most bookings aimed at
+ * a few hot trips. The run reports throughput, latency percentiles and SQL
+ * statements per operation, then checks every trip's seats against its
+ * reservations and the reservation event log. The process exits with status
+ * 1 if any seat-consistency violation was found.
+ *
+ * Settings are read from sim.* system properties (see {@link #main}); app.*
+ * properties are passed to the application.
+ */
+public class BookingStormSimulation {
+
+    enum Operation { SEARCH, BOOK, CANCEL, CONFIRM }
+
+    private final int users = Integer.getInteger("sim.users", 2000);
+    private final int drivers = Integer.getInteger("sim.drivers", 200);
+    private final int trips = Integer.getInteger("sim.trips", 500);
+    private final int hotTrips = Integer.getInteger("sim.hotTrips", 20);
+    private final int durationSeconds = Integer.getInteger("sim.durationSeconds", 60);
+    private final int thinkMillis = Integer.getInteger("sim.thinkMillis", 100);
+    private final Map<Operation, Integer> mix = parseMix(System.getProperty("sim.mix", "search=70,book=20,cancel=5,confirm=5"));
+
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> rejected = new EnumMap<>(Operation.class);
+    private final Map<String, LongAdder> rejectionReasons = new ConcurrentHashMap<>();
+
+    // Bookings not yet confirmed by their driver
+    private final Queue<Booking> pendingBookings = new ConcurrentLinkedQueue<>();
+
+    private final List<Long> passengerIds = new ArrayList<>();
+    private final List<Long> tripIds = new ArrayList<>();
+    private final Map<Long, Long> driverByTrip = new ConcurrentHashMap<>();
+    private final List<String> cityNames = new ArrayList<>();
+
+    private TripService tripService;
+
+    /**
+     * Settings: sim.users, sim.drivers, sim.trips, sim.hotTrips, sim.durationSeconds,
+     * sim.thinkMillis and sim.mix (e.g. "search=70,book=20,cancel=5,confirm=5").
+     */
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CovoiturageFinalApplication.class)
+            .profiles("simulation")
+            .web(WebApplicationType.NONE)
+            .run(args);
+        int violations;
+        try {
+            violations = new BookingStormSimulation().run(context);
+        } finally {
+            context.close();
+        }
+        System.exit(violations == 0 ? 0 : 1);
+    }
+
+    int run(ConfigurableApplicationContext context) throws InterruptedException {
+        tripService = context.getBean(TripService.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            rejected.put(operation, new LongAdder());
+        }
+
+        seed(context);
+        long statementsBefore = QueryCounter.count();
+        long elapsedNanos = storm();
+        long statementsDuring = QueryCounter.count() - statementsBefore;
+
+        report(elapsedNanos, statementsDuring);
+        return checkSeats(context);
+    }
+
+    private void seed(ConfigurableApplicationContext context) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        List<Ville> cities = context.getBean(VilleRepository.class).findAll();
+        for (Ville city : cities) {
+            cityNames.add(city.getName());
+        }
+
+        List<User> seededDrivers = new ArrayList<>();
+        for (int i = 0; i < drivers; i++) {
+            seededDrivers.add(new Conducteur("sim-driver-" + i, "sim-driver-" + i + "@sim.tn", "secret",
+                "Sim", "Driver " + i, "20" + String.format("%06d", i)));
+        }
+        seededDrivers = userRepository.saveAll(seededDrivers);
+
+        List<User> passengers = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            passengers.add(new Passager("sim-passenger-" + i, "sim-passenger-" + i + "@sim.tn", "secret",
+                "Sim", "Passenger " + i, "50" + String.format("%06d", i)));
+        }
+        for (User passenger : userRepository.saveAll(passengers)) {
+            passengerIds.add(passenger.getId());
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < trips; i++) {
+            Ville from = cities.get(random.nextInt(cities.size()));
+            Ville to = cities.get(random.nextInt(cities.size()));
+            CreateTripRequest request = new CreateTripRequest();
+            request.setDepartureTime(LocalDateTime.now().plusHours(1 + random.nextInt(72)));
+            request.setArrivalTime(request.getDepartureTime().plusHours(2));
+            request.setPricePerSeat(5.0 + random.nextInt(40));
+            request.setMaxSeats(3 + random.nextInt(4));
+            request.setDescription("Simulated trip " + i);
+            request.setStartPoint(new CreateTripRequest.GPSPointRequest(from.getLatitude(), from.getLongitude(), from.getName()));
+            request.setEndPoint(new CreateTripRequest.GPSPointRequest(to.getLatitude(), to.getLongitude(), to.getName()));
+            request.setVilleIds(List.of(from.getId(), to.getId()));
+
+            Long driverId = seededDrivers.get(i % seededDrivers.size()).getId();
+            TripResponse trip = tripService.createTrip(request, driverId);
+            tripIds.add(trip.getId());
+            driverByTrip.put(trip.getId(), driverId);
+        }
+        System.out.printf("Seeded %d cities, %d drivers, %d passengers, %d trips%n",
+            cities.size(), drivers, users, trips);
+    }
+
+    private long storm() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(users);
+        for (int i = 0; i < users; i++) {
+            Long passengerId = passengerIds.get(i);
+            Thread.ofVirtual().name("sim-user-" + i).start(() -> {
+                try {
+                    start.await();
+                    virtualUser(passengerId, deadline);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+
+    private void virtualUser(Long passengerId, long deadline) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Deque<Long> myBookings = new ArrayDeque<>();
+        while (System.nanoTime() < deadline) {
+            Operation operation = pick(random.nextInt(100));
+            long begin = System.nanoTime();
+            try {
+                switch (operation) {
+                    case SEARCH -> search(random);
+                    case BOOK -> book(passengerId, myBookings, random);
+                    case CANCEL -> cancel(passengerId, myBookings);
+                    case CONFIRM -> confirm();
+                }
+            } catch (RuntimeException e) {
+                rejected.get(operation).increment();
+                String reason = operation + ": " + e.getMessage();
+                rejectionReasons.computeIfAbsent(reason, r -> new LongAdder()).increment();
+            }
+            latencies.get(operation).record(System.nanoTime() - begin);
+            if (thinkMillis > 0) {
+                Thread.sleep(random.nextInt(thinkMillis * 2 + 1));
+            }
+        }
+    }
+
+    private void search(ThreadLocalRandom random) {
+        SearchTripRequest request = new SearchTripRequest();
+        request.setDepartureTime(LocalDateTime.now().plusMinutes(30));
+        request.setMaxDepartureTime(request.getDepartureTime().plusDays(1 + random.nextInt(3)));
+        if (random.nextBoolean()) {
+            request.setStartCity(cityNames.get(random.nextInt(cityNames.size())));
+            request.setEndCity(cityNames.get(random.nextInt(cityNames.size())));
+        }
+        tripService.searchTrips(request);
+    }
+
+    private void book(Long passengerId, Deque<Long> myBookings, ThreadLocalRandom random) {
+        // Four bookings in five go to the few trips everyone wants
+        Long tripId = random.nextInt(5) < 4
+            ? tripIds.get(random.nextInt(Math.min(hotTrips, tripIds.size())))
+            : tripIds.get(random.nextInt(tripIds.size()));
+        BookingResponse booking = tripService.createBooking(new BookingRequest(tripId, 1 + random.nextInt(2), null), passengerId);
+        myBookings.add(booking.getId());
+        pendingBookings.add(new Booking(booking.getId(), tripId));
+    }
+
+    private void cancel(Long passengerId, Deque<Long> myBookings) {
+        Long bookingId = myBookings.pollFirst();
+        if (bookingId == null) {
+            throw new RuntimeException("No booking to cancel");
+        }
+        tripService.cancelBooking(bookingId, passengerId);
+    }
+
+    private void confirm() {
+        Booking booking = pendingBookings.poll();
+        if (booking == null) {
+            throw new RuntimeException("No booking to confirm");
+        }
+        tripService.confirmBooking(booking.bookingId(), driverByTrip.get(booking.tripId()));
+    }
+
+    private Operation pick(int roll) {
+        int cumulative = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            cumulative += entry.getValue();
+            if (roll < cumulative) {
+                return entry.getKey();
+            }
+        }
+        return Operation.SEARCH;
+    }
+
+    private void report(long elapsedNanos, long statementsDuring) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        System.out.printf("%nBooking storm: %d virtual users for %.1f s (mix %s)%n", users, seconds, mix);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s%n", "op", "count", "rejected", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            total += histogram.count();
+            System.out.printf("%-8s %10d %10d %10.0f %10.1f %10.1f %10.1f%n", operation, histogram.count(),
+                rejected.get(operation).sum(), histogram.count() / seconds, histogram.percentileMillis(50),
+                histogram.percentileMillis(99), histogram.percentileMillis(99.9));
+        }
+        System.out.printf("total    %10d %10s %10.0f%n", total, "", total / seconds);
+        System.out.printf("SQL statements: %d (%.1f per operation)%n", statementsDuring,
+            total == 0 ? 0.0 : (double) statementsDuring / total);
+
+        Map<String, Long> reasons = new TreeMap<>();
+        rejectionReasons.forEach((reason, count) -> reasons.put(reason, count.sum()));
+        reasons.forEach((reason, count) -> System.out.printf("  rejected %6d x %s%n", count, reason));
+    }
+
+    /**
+     * Every trip must satisfy available + held = maxSeats, never go negative,
+     * and agree with the reservation event log and the trip read model.
+     * Returns the number of violations.
+     */
+    private int checkSeats(ConfigurableApplicationContext context) {
+        SeatLedger seatLedger = context.getBean(SeatLedger.class);
+        VoyageRepository voyageRepository = context.getBean(VoyageRepository.class);
+        ReservationRepository reservationRepository = context.getBean(ReservationRepository.class);
+        ReservationEventLog reservationEventLog = context.getBean(ReservationEventLog.class);
+        TripReadModelRepository tripReadModelRepository = context.getBean(TripReadModelRepository.class);
+        seatLedger.flush();
+
+        int violations = 0;
+        for (Voyage trip : voyageRepository.findAllById(tripIds)) {
+            int available = seatLedger.availableSeats(trip);
+            int held = reservationRepository.sumActiveSeatsByVoyageId(trip.getId()).intValue();
+            int logged = reservationEventLog.reservedSeats(trip.getId());
+            List<String> problems = new ArrayList<>();
+            if (available < 0) {
+                problems.add("negative available seats");
+            }
+            if (held > trip.getMaxSeats()) {
+                problems.add("oversold");
+            }
+            if (available + held != trip.getMaxSeats()) {
+                problems.add("available + held != max");
+            }
+            if (logged != held) {
+                problems.add("event log holds " + logged);
+            }
+            TripReadModel row = tripReadModelRepository.findById(trip.getId()).orElse(null);
+            if (row == null || row.getAvailableSeats() != available) {
+                problems.add("read model shows " + (row != null ? row.getAvailableSeats() : "no row"));
+            }
+            if (!problems.isEmpty()) {
+                violations++;
+                System.out.printf("  trip %d: max %d, available %d, held %d: %s%n",
+                    trip.getId(), trip.getMaxSeats(), available, held, String.join(", ", problems));
+            }
+        }
+        System.out.printf("Seat consistency: %d violations over %d trips%n", violations, tripIds.size());
+        return violations;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        int sum = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (sum != 100) {
+            throw new IllegalArgumentException("sim.mix weights must add up to 100, got " + sum);
+        }
+        return weights;
+    }
+
+    private record Booking(Long bookingId, Long tripId) {
+    }
+}
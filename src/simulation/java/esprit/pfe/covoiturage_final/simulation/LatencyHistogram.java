@@ -0,0 +1,45 @@
+package esprit.pfe.covoiturage_final.simulation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with 0.1 ms buckets up to 10 s; slower samples
+ * land in the last bucket.
+ */
+class LatencyHistogram {
+
+    private static final long BUCKET_NANOS = 100_000;
+    private static final int BUCKETS = 100_000;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+
+    void record(long nanos) {
+        buckets.incrementAndGet((int) Math.min(BUCKETS - 1, Math.max(0, nanos / BUCKET_NANOS)));
+        count.increment();
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, in milliseconds.
+     */
+    double percentileMillis(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return (i + 1) * BUCKET_NANOS / 1e6;
+            }
+        }
+        return BUCKETS * BUCKET_NANOS / 1e6;
+    }
+}
@@ -0,0 +1,65 @@
+package esprit.pfe.covoiturage_final.simulation;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps the application's DataSource to count the SQL statements executed,
+ * whether they come from Hibernate or JdbcTemplate. A JDBC batch counts once.
+ */
+@Component
+public class QueryCounter implements BeanPostProcessor {
+
+    private static final LongAdder executed = new LongAdder();
+
+    public static long count() {
+        return executed.sum();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource);
+        }
+        return bean;
+    }
+
+    private static <T> T proxy(Class<T> type, T target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result = invoke(method, target, args);
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                executed.increment();
+            } else if (result instanceof Connection connection && name.equals("getConnection")) {
+                return proxy(Connection.class, connection);
+            } else if (result instanceof CallableStatement statement) {
+                return proxy(CallableStatement.class, statement);
+            } else if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, statement);
+            } else if (result instanceof Statement statement && name.equals("createStatement")) {
+                return proxy(Statement.class, statement);
+            }
+            return result;
+        };
+        return type.cast(Proxy.newProxyInstance(QueryCounter.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package esprit.pfe.covoiturage_final;
+
+import esprit.pfe.covoiturage_final.entities.Conducteur;
+import esprit.pfe.covoiturage_final.entities.Passager;
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.ReservationRepository;
+import esprit.pfe.covoiturage_final.repositories.UserRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import esprit.pfe.covoiturage_final.security.JwtUtils;
+import esprit.pfe.covoiturage_final.services.TripReadModelProjector;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput and tail latency of the blocking request path on Tomcat's platform
+ * thread pool versus virtual threads, run with {@code ./gradlew benchmark}.
+ *
+ * Both runs start the application on the H2 profile with the same connection
+ * pool, seed the same trips, and send more concurrent requests than the
+ * platform pool has threads. In-memory H2 answers without blocking, which
+ * hides what the thread model changes, so every statement first blocks for a
+ * simulated database round trip. Two paths are measured: the public page of
+ * available trips, one query, and an authenticated trip's bookings, which
+ * also loads the user behind the token.
+ */
+@Tag("benchmark")
+class RequestExecutionBenchmarkTest {
+
+    private static final int TRIPS = 200;
+    private static final int CLIENTS = 400;
+    private static final int REQUESTS = 8000;
+    private static final int WARMUP_REQUESTS = 1000;
+    private static final int PLATFORM_THREADS = 50;
+    private static final int BOOKINGS = 4;
+    private static final long DB_LATENCY_MILLIS = 2;
+
+    @Test
+    void comparesPlatformAndVirtualThreads() throws Exception {
+        Result[] platform = run(false);
+        Result[] virtual = run(true);
+
+        System.out.printf("request execution: %d requests from %d clients, %d Tomcat threads in platform mode, " +
+            "%d ms per statement%n", REQUESTS, CLIENTS, PLATFORM_THREADS, DB_LATENCY_MILLIS);
+        System.out.println("  available trips, platform threads: " + platform[0]);
+        System.out.println("  available trips, virtual threads:  " + virtual[0]);
+        System.out.println("  trip bookings, platform threads:   " + platform[1]);
+        System.out.println("  trip bookings, virtual threads:    " + virtual[1]);
+    }
+
+    private Result[] run(boolean virtualThreads) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CovoiturageFinalApplication.class)
+            .initializers(applicationContext -> applicationContext.getBeanFactory()
+                .addBeanPostProcessor(simulatedDbLatency()))
+            .profiles("h2")
+            .properties(
+                "server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:bench-" + virtualThreads + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "spring.datasource.hikari.maximum-pool-size=20",
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "server.tomcat.threads.max=" + PLATFORM_THREADS,
+                "logging.level.esprit.pfe.covoiturage_final=INFO",
+                "logging.level.org.springframework.security=INFO")
+            .run();
+        try {
+            Seeded seeded = seed(context);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpRequest available = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/trips/available/paged?size=20")).GET().build();
+            Conducteur driver = seeded.driver();
+            String token = context.getBean(JwtUtils.class)
+                .generateJwtToken(new UsernamePasswordAuthenticationToken(driver, null, driver.getAuthorities()));
+            HttpRequest bookings = HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + port + "/api/bookings/trip/" + seeded.bookedTripId()))
+                .header("Authorization", "Bearer " + token)
+                .GET().build();
+
+            load(available, WARMUP_REQUESTS);
+            Result availableResult = load(available, REQUESTS);
+            load(bookings, WARMUP_REQUESTS);
+            Result bookingsResult = load(bookings, REQUESTS);
+            return new Result[] {availableResult, bookingsResult};
+        } finally {
+            context.close();
+        }
+    }
+
+    private Seeded seed(ConfigurableApplicationContext context) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        VoyageRepository voyageRepository = context.getBean(VoyageRepository.class);
+        ReservationRepository reservationRepository = context.getBean(ReservationRepository.class);
+
+        Conducteur driver = userRepository.save(new Conducteur("bench-driver", "bench-driver@test.tn", "secret",
+            "Bench", "Driver", "20000001"));
+        List<Voyage> trips = new ArrayList<>();
+        for (int i = 0; i < TRIPS; i++) {
+            Voyage trip = new Voyage();
+            trip.setDepartureTime(LocalDateTime.now().plusHours(1 + i));
+            trip.setPricePerSeat(10.0 + i % 30);
+            trip.setMaxSeats(4);
+            trip.setAvailableSeats(4);
+            trip.setStatus(Voyage.VoyageStatus.PLANNED);
+            trip.setConducteurId(driver.getId());
+            trips.add(trip);
+        }
+        // The first trip is fully booked, one seat per passenger
+        trips.get(0).setAvailableSeats(4 - BOOKINGS);
+        voyageRepository.saveAll(trips);
+
+        for (int i = 0; i < BOOKINGS; i++) {
+            Passager passenger = userRepository.save(new Passager("bench-passenger-" + i,
+                "bench-passenger-" + i + "@test.tn", "secret", "Bench", "Passenger", "2100000" + i));
+            Reservation reservation = new Reservation();
+            reservation.setVoyageId(trips.get(0).getId());
+            reservation.setPassagerId(passenger.getId());
+            reservation.setNumberOfSeats(1);
+            reservation.setTotalPrice(trips.get(0).getPricePerSeat());
+            reservation.setStatus(Reservation.ReservationStatus.CONFIRMED);
+            reservationRepository.save(reservation);
+        }
+        // Saved straight to voyages, so bring the read model in line before loading it
+        context.getBean(TripReadModelProjector.class).rebuild();
+        return new Seeded(driver, trips.get(0).getId());
+    }
+
+    /**
+     * Wraps the connection pool so every statement blocks for
+     * {@link #DB_LATENCY_MILLIS} before it runs, like a round trip to a
+     * database on another host.
+     */
+    private static BeanPostProcessor simulatedDbLatency() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // AutoCloseable too, so the context still shuts the pool down
+                return bean instanceof DataSource ? delayed(bean, DataSource.class, AutoCloseable.class) : bean;
+            }
+        };
+    }
+
+    private static Object delayed(Object target, Class<?>... interfaces) {
+        return Proxy.newProxyInstance(RequestExecutionBenchmarkTest.class.getClassLoader(), interfaces,
+            (proxy, method, args) -> {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+                if (target instanceof Statement && method.getName().startsWith("execute")) {
+                    Thread.sleep(DB_LATENCY_MILLIS);
+                }
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                return switch (method.getName()) {
+                    case "getConnection" -> delayed(result, Connection.class);
+                    case "createStatement" -> delayed(result, Statement.class);
+                    case "prepareStatement" -> delayed(result, PreparedStatement.class);
+                    case "prepareCall" -> delayed(result, CallableStatement.class);
+                    default -> result;
+                };
+            });
+    }
+
+    private Result load(HttpRequest request, int requests) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> clients = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        long begin = System.nanoTime();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[i] = System.nanoTime() - begin;
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : clients) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            assertEquals(0, failures.get());
+            Arrays.sort(latencies);
+            return new Result(requests / (elapsed / 1e9), latencies[requests / 2] / 1e6,
+                latencies[(int) (requests * 0.99)] / 1e6, latencies[requests - 1] / 1e6);
+        }
+    }
+
+    private record Seeded(Conducteur driver, Long bookedTripId) {
+    }
+
+    private record Result(double throughput, double p50Millis, double p99Millis, double maxMillis) {
+        @Override
+        public String toString() {
+            return String.format("%.0f req/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                throughput, p50Millis, p99Millis, maxMillis);
+        }
+    }
+}
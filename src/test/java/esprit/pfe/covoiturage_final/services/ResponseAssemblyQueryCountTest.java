@@ -0,0 +1,164 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.dto.BookingResponse;
+import esprit.pfe.covoiturage_final.dto.TripResponse;
+import esprit.pfe.covoiturage_final.entities.Conducteur;
+import esprit.pfe.covoiturage_final.entities.Passager;
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.ReservationRepository;
+import esprit.pfe.covoiturage_final.repositories.UserRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the booking and trip lists cost a fixed number of queries
+ * however many rows they hold.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("h2")
+class ResponseAssemblyQueryCountTest {
+
+    private static final int TRIPS = 6;
+    private static final int PASSENGERS = 5;
+
+    @Autowired
+    private TripService tripService;
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverSummaryCache driverSummaryCache;
+
+    @Autowired
+    private TripReadModelProjector tripReadModelProjector;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void bookingListsUseConstantQueries() {
+        String prefix = "qc-booking-" + System.nanoTime();
+        Conducteur driver = saveDriver(prefix);
+        List<Voyage> trips = saveTrips(driver, TRIPS);
+        List<Passager> passengers = savePassengers(prefix, PASSENGERS);
+        Passager single = savePassengers(prefix + "-single", 1).get(0);
+
+        // Every passenger books every trip: 30 bookings across 6 trips sharing one driver
+        for (Voyage trip : trips) {
+            for (Passager passenger : passengers) {
+                saveReservation(trip, passenger);
+            }
+        }
+        saveReservation(trips.get(0), single);
+
+        long oneBooking = countQueries(() -> tripService.getBookingsByPassenger(single.getId()), 1);
+        long manyBookings = countQueries(() -> tripService.getBookingsByPassenger(passengers.get(0).getId()), TRIPS);
+        assertEquals(oneBooking, manyBookings);
+        assertTrue(manyBookings <= 4, "getBookingsByPassenger ran " + manyBookings + " queries");
+
+        long tripBookings = countQueries(() -> tripService.getBookingsByTrip(trips.get(0).getId()), PASSENGERS + 1);
+        assertEquals(oneBooking, tripBookings);
+
+        List<BookingResponse> bookings = tripService.getBookingsByTrip(trips.get(1).getId());
+        assertEquals("Qc Driver", bookings.get(0).getTrip().getDriverName());
+        assertEquals("Passenger", bookings.get(0).getPassenger().getLastName());
+    }
+
+    @Test
+    void driverTripListUsesConstantQueries() {
+        String prefix = "qc-trip-" + System.nanoTime();
+        Conducteur fewTrips = saveDriver(prefix + "-few");
+        Conducteur manyTrips = saveDriver(prefix + "-many");
+        saveTrips(fewTrips, 1);
+        saveTrips(manyTrips, 20);
+        // The trips were saved straight to voyages, bypassing the read model upkeep
+        tripReadModelProjector.rebuild();
+
+        long oneTrip = countQueries(() -> tripService.getTripsByDriver(fewTrips.getId()), 1);
+        long twentyTrips = countQueries(() -> tripService.getTripsByDriver(manyTrips.getId()), 20);
+        assertEquals(oneTrip, twentyTrips);
+        // Served from the read model alone
+        assertTrue(twentyTrips <= 1, "getTripsByDriver ran " + twentyTrips + " queries");
+
+        List<TripResponse> responses = tripService.getTripsByDriver(manyTrips.getId());
+        assertEquals(manyTrips.getId(), responses.get(0).getDriver().getId());
+    }
+
+    private long countQueries(Supplier<List<?>> call, int expectedRows) {
+        // Cold driver cache, so every call pays for the same lookups
+        driverSummaryCache.clear();
+        statistics.clear();
+        List<?> rows = call.get();
+        assertEquals(expectedRows, rows.size());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Conducteur saveDriver(String prefix) {
+        return userRepository.save(new Conducteur(prefix + "-driver", prefix + "-driver@test.tn", "secret",
+            "Qc", "Driver", "20000000"));
+    }
+
+    private List<Passager> savePassengers(String prefix, int count) {
+        List<Passager> passengers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            passengers.add(userRepository.save(new Passager(prefix + "-passenger-" + i,
+                prefix + "-passenger-" + i + "@test.tn", "secret", "Qc", "Passenger", "2100" + i)));
+        }
+        return passengers;
+    }
+
+    private List<Voyage> saveTrips(Conducteur driver, int count) {
+        List<Voyage> trips = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Voyage trip = new Voyage();
+            trip.setDepartureTime(LocalDateTime.now().plusDays(1 + i));
+            trip.setPricePerSeat(15.0);
+            trip.setMaxSeats(10);
+            trip.setAvailableSeats(10);
+            trip.setStatus(Voyage.VoyageStatus.PLANNED);
+            trip.setConducteurId(driver.getId());
+            trips.add(voyageRepository.save(trip));
+        }
+        return trips;
+    }
+
+    private void saveReservation(Voyage trip, Passager passenger) {
+        Reservation reservation = new Reservation();
+        reservation.setNumberOfSeats(1);
+        reservation.setTotalPrice(trip.getPricePerSeat());
+        reservation.setReservationDate(LocalDateTime.now());
+        reservation.setVoyageId(trip.getId());
+        reservation.setPassagerId(passenger.getId());
+        reservationRepository.save(reservation);
+    }
+}
@@ -0,0 +1,76 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.dto.BookingRequest;
+import esprit.pfe.covoiturage_final.dto.BookingResponse;
+import esprit.pfe.covoiturage_final.entities.Conducteur;
+import esprit.pfe.covoiturage_final.entities.Passager;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.UserRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the concurrent booking check with the seat ledger taking the seats, and
+ * checks that seats released while the ledger holds no counter for the trip
+ * are not counted twice.
+ */
+@SpringBootTest(properties = "app.seatLedgerEnabled=true")
+@ActiveProfiles("h2")
+class SeatLedgerConcurrencyTest extends SeatReservationConcurrencyTest {
+
+    @Autowired
+    private TripService tripService;
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SeatLedger seatLedger;
+
+    @Test
+    void releaseAfterEvictionDoesNotOversellTrip() {
+        String prefix = "ledger-" + System.nanoTime();
+        Conducteur driver = userRepository.save(new Conducteur(prefix + "-driver", prefix + "-driver@test.tn", "secret",
+            "Ledger", "Driver", "20000000"));
+
+        Voyage trip = new Voyage();
+        trip.setDepartureTime(LocalDateTime.now().plusDays(1));
+        trip.setPricePerSeat(20.0);
+        trip.setMaxSeats(5);
+        trip.setAvailableSeats(5);
+        trip.setStatus(Voyage.VoyageStatus.PLANNED);
+        trip.setConducteurId(driver.getId());
+        Long tripId = voyageRepository.save(trip).getId();
+
+        Long first = savePassenger(prefix, 0);
+        Long second = savePassenger(prefix, 1);
+        Long third = savePassenger(prefix, 2);
+        BookingResponse cancelled = tripService.createBooking(new BookingRequest(tripId, 2, null), first);
+        tripService.createBooking(new BookingRequest(tripId, 1, null), second);
+
+        // The next booking reloads the counter, which already leaves out the cancelled seats
+        seatLedger.evict(tripId);
+        tripService.cancelBooking(cancelled.getId(), first);
+
+        tripService.createBooking(new BookingRequest(tripId, 4, null), third);
+        RuntimeException error = assertThrows(RuntimeException.class,
+            () -> tripService.createBooking(new BookingRequest(tripId, 1, null), third));
+        assertEquals("Not enough available seats", error.getMessage());
+    }
+
+    private Long savePassenger(String prefix, int index) {
+        return userRepository.save(new Passager(prefix + "-passenger-" + index, prefix + "-passenger-" + index + "@test.tn",
+            "secret", "Ledger", "Passenger", "2100" + index)).getId();
+    }
+}
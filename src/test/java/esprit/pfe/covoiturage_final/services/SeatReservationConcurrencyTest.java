@@ -0,0 +1,120 @@
+package esprit.pfe.covoiturage_final.services;
+
+import esprit.pfe.covoiturage_final.dto.BookingRequest;
+import esprit.pfe.covoiturage_final.entities.Conducteur;
+import esprit.pfe.covoiturage_final.entities.Passager;
+import esprit.pfe.covoiturage_final.entities.Reservation;
+import esprit.pfe.covoiturage_final.entities.Voyage;
+import esprit.pfe.covoiturage_final.repositories.ReservationRepository;
+import esprit.pfe.covoiturage_final.repositories.UserRepository;
+import esprit.pfe.covoiturage_final.repositories.VoyageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Books the same trip from many threads at once and checks that no seat is sold twice.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class SeatReservationConcurrencyTest {
+
+    private static final int SEATS = 50;
+    private static final int PASSENGERS = 300;
+    private static final int THREADS = 100;
+
+    @Autowired
+    private TripService tripService;
+
+    @Autowired
+    private VoyageRepository voyageRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SeatLedger seatLedger;
+
+    @Test
+    void concurrentBookingsNeverOversellTrip() throws Exception {
+        String prefix = "seat-" + System.nanoTime();
+        Conducteur driver = userRepository.save(new Conducteur(prefix + "-driver", prefix + "-driver@test.tn", "secret",
+            "Seat", "Driver", "20000000"));
+
+        Voyage trip = new Voyage();
+        trip.setDepartureTime(LocalDateTime.now().plusDays(1));
+        trip.setPricePerSeat(20.0);
+        trip.setMaxSeats(SEATS);
+        trip.setAvailableSeats(SEATS);
+        trip.setStatus(Voyage.VoyageStatus.PLANNED);
+        trip.setConducteurId(driver.getId());
+        Long tripId = voyageRepository.save(trip).getId();
+
+        List<Long> passengerIds = new ArrayList<>();
+        for (int i = 0; i < PASSENGERS; i++) {
+            Passager passenger = new Passager(prefix + "-passenger-" + i, prefix + "-passenger-" + i + "@test.tn", "secret",
+                "Seat", "Passenger", "2100" + i);
+            passengerIds.add(userRepository.save(passenger).getId());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        long[] latencies = new long[PASSENGERS];
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < PASSENGERS; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                long begin = System.nanoTime();
+                try {
+                    tripService.createBooking(new BookingRequest(tripId, 1, null), passengerIds.get(index));
+                    booked.incrementAndGet();
+                } catch (RuntimeException e) {
+                    assertEquals("Not enough available seats", e.getMessage());
+                    rejected.incrementAndGet();
+                } finally {
+                    latencies[index] = System.nanoTime() - begin;
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        // With the ledger on, seats reach the voyages row on its next flush
+        seatLedger.flush();
+
+        assertEquals(SEATS, booked.get());
+        assertEquals(PASSENGERS - SEATS, rejected.get());
+        assertEquals(0, voyageRepository.findById(tripId).orElseThrow().getAvailableSeats());
+        assertEquals(SEATS, reservationRepository.findByVoyageIdAndStatus(tripId, Reservation.ReservationStatus.PENDING).size());
+
+        Arrays.sort(latencies);
+        System.out.printf("bookings: %d attempts on %d threads, %.0f req/s, p50 %.2f ms, p99 %.2f ms%n",
+            PASSENGERS, THREADS, PASSENGERS / (elapsed / 1e9),
+            latencies[PASSENGERS / 2] / 1e6, latencies[(int) (PASSENGERS * 0.99)] / 1e6);
+    }
+}
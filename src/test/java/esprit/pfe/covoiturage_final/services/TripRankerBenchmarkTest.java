@@ -0,0 +1,66 @@
+package esprit.pfe.covoiturage_final.services;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Latency of the ranking stage alone, run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class TripRankerBenchmarkTest {
+
+    private static final int CANDIDATES = 100_000;
+    private static final int K = 20;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+
+    private final TripRanker ranker = new TripRanker();
+    private final LocalDateTime requested = LocalDateTime.of(2030, 1, 15, 8, 0);
+
+    @Test
+    void topKMatchesFullSortAndReportsLatency() {
+        List<TripRanker.Candidate> candidates = new ArrayList<>(CANDIDATES);
+        Map<Long, Double> ratings = new HashMap<>();
+        Random random = new Random(42);
+        for (long id = 1; id <= CANDIDATES; id++) {
+            long driverId = id % 2000;
+            ratings.putIfAbsent(driverId, random.nextDouble() * 5);
+            candidates.add(new TripRanker.Candidate(id, driverId,
+                requested.plusMinutes(random.nextInt(24 * 60)),
+                10 + random.nextDouble() * 60,
+                random.nextDouble() * 10, random.nextDouble() * 10));
+        }
+
+        List<Long> expected = candidates.stream()
+            .sorted(Comparator.comparingDouble((TripRanker.Candidate c) -> ranker.score(c, ratings, requested, 10.0)).reversed())
+            .limit(K)
+            .map(TripRanker.Candidate::getTripId)
+            .collect(Collectors.toList());
+        assertEquals(expected, ranker.topK(candidates, ratings, requested, 10.0, K));
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            ranker.topK(candidates, ratings, requested, 10.0, K);
+        }
+        long[] nanos = new long[MEASURED_ROUNDS];
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            ranker.topK(candidates, ratings, requested, 10.0, K);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("TripRanker.topK: %d candidates, K=%d, p50=%.2f ms, p99=%.2f ms%n",
+            CANDIDATES, K, nanos[MEASURED_ROUNDS / 2] / 1e6, nanos[(int) (MEASURED_ROUNDS * 0.99)] / 1e6);
+    }
+}